@@ -0,0 +1,50 @@
+package com.automation.bench;
+
+import com.automation.utils.ConfigReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration lookups as done on the hot path of page objects and utilities
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+
+    @Benchmark
+    public String getProperty() {
+        return ConfigReader.getProperty("app.package");
+    }
+
+    @Benchmark
+    public int getIntProperty() {
+        return ConfigReader.getIntProperty("screenshot.quality", 80);
+    }
+
+    @Benchmark
+    public boolean getBooleanProperty() {
+        return ConfigReader.getBooleanProperty("screenshot.dedupe.enabled");
+    }
+
+    @Benchmark
+    public String deviceProfile() {
+        return ConfigReader.forDevice("emulator-5554").get("app.package");
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int getIntPropertyContended() {
+        return ConfigReader.getIntProperty("screenshot.quality", 80);
+    }
+}
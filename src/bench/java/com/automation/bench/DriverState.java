@@ -0,0 +1,37 @@
+package com.automation.bench;
+
+import com.automation.base.DriverManager;
+import io.appium.java_client.android.AndroidDriver;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+
+/**
+ * A real framework session, created through DriverManager, against the fake Appium server.
+ * The server URL is set as a system property before ConfigReader loads, which happens on the
+ * first framework call in the forked benchmark JVM.
+ */
+@State(Scope.Thread)
+public class DriverState {
+
+    FakeAppiumServer server;
+    AndroidDriver driver;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        server = new FakeAppiumServer();
+        System.setProperty("appium.server.url", server.getUrl().toString());
+        DriverManager.initializeDriver();
+        driver = DriverManager.getDriver();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        DriverManager.quitDriver();
+        server.close();
+    }
+}
@@ -0,0 +1,268 @@
+package com.automation.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-JVM stand-in for an Appium server speaking enough of the W3C WebDriver protocol for the
+ * framework: sessions, element lookups and interactions, page source and screenshots.
+ * Responses are canned, so benchmarks measure the framework and the HTTP stack, not a device.
+ */
+public class FakeAppiumServer implements AutoCloseable {
+
+    private static final String ELEMENT_KEY = "element-6066-11e4-a52e-4f735466cecf";
+    private static final Pattern SESSION_PATH = Pattern.compile("^/session/([^/]+)(/.*)?$");
+    private static final Pattern ELEMENT_PATH = Pattern.compile("^/element/([^/]+)/(.+)$");
+
+    static {
+        // Without TCP_NODELAY every request on a kept-alive connection waits ~40 ms for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    // Virtual threads, so a response delay does not tie up a platform thread per open request
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fake-appium-", 0).factory());
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final AtomicLong elementIds = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final String pageSource;
+    private final String screenshot;
+    private final Duration responseDelay;
+
+    public FakeAppiumServer() throws IOException {
+        this(0, 120);
+    }
+
+    /**
+     * @param port         port to listen on, 0 for any free port
+     * @param contactCount rows of the canned contacts list, which sets the page source size
+     */
+    public FakeAppiumServer(int port, int contactCount) throws IOException {
+        this(port, contactCount, Duration.ZERO);
+    }
+
+    /**
+     * @param port          port to listen on, 0 for any free port
+     * @param contactCount  rows of the canned contacts list, which sets the page source size
+     * @param responseDelay time every response is held back, standing in for the device
+     */
+    public FakeAppiumServer(int port, int contactCount, Duration responseDelay) throws IOException {
+        this.responseDelay = responseDelay;
+        this.pageSource = contactsPageSource(contactCount);
+        this.screenshot = Base64.getEncoder().encodeToString(screenshotPng(1080, 2400));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public URL getUrl() {
+        try {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getPageSource() {
+        return pageSource;
+    }
+
+    public byte[] getScreenshotPng() {
+        return Base64.getDecoder().decode(screenshot);
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            if (!responseDelay.isZero()) {
+                try {
+                    Thread.sleep(responseDelay.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            Object value = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+            byte[] body = mapper.writeValueAsBytes(Collections.singletonMap("value", value));
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    private Object route(String method, String path) {
+        if (path.equals("/status")) {
+            return Map.of("ready", true, "message", "fake appium ready");
+        }
+        if (path.equals("/session") && method.equals("POST")) {
+            Map<String, Object> capabilities = new HashMap<>();
+            capabilities.put("platformName", "Android");
+            capabilities.put("automationName", "UiAutomator2");
+            return Map.of("sessionId", "fake-session-" + sessionIds.incrementAndGet(), "capabilities", capabilities);
+        }
+        Matcher session = SESSION_PATH.matcher(path);
+        if (!session.matches()) {
+            return null;
+        }
+        String command = session.group(2) == null ? "" : session.group(2);
+        if (command.isEmpty()) {
+            return null;
+        }
+        switch (command) {
+            case "/element":
+                return element();
+            case "/elements":
+                return List.of(element(), element(), element());
+            case "/source":
+                return pageSource;
+            case "/screenshot":
+                return screenshot;
+            case "/appium/device/current_activity":
+                return "com.android.contacts.activities.PeopleActivity";
+            case "/appium/device/current_package":
+                return "com.google.android.contacts";
+            case "/execute/sync":
+                return true;
+            default:
+                break;
+        }
+        Matcher element = ELEMENT_PATH.matcher(command);
+        if (element.matches()) {
+            return elementCommand(element.group(2));
+        }
+        return null;
+    }
+
+    private Object elementCommand(String command) {
+        switch (command) {
+            case "displayed":
+            case "enabled":
+                return true;
+            case "selected":
+                return false;
+            case "text":
+                return "Contacts";
+            case "name":
+                return "android.widget.TextView";
+            case "rect":
+                return Map.of("x", 0, "y", 0, "width", 1080, "height", 160);
+            case "screenshot":
+                return screenshot;
+            case "element":
+                return element();
+            default:
+                if (command.startsWith("attribute/")) {
+                    return "true";
+                }
+                return null;
+        }
+    }
+
+    private Map<String, String> element() {
+        return Map.of(ELEMENT_KEY, "fake-element-" + elementIds.incrementAndGet());
+    }
+
+    /**
+     * UiAutomator2-style hierarchy of the Contacts list screen
+     */
+    private static String contactsPageSource(int contactCount) {
+        StringBuilder xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n"
+                + "<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\" width=\"1080\" height=\"2400\">\n"
+                + "<android.widget.FrameLayout index=\"0\" package=\"com.google.android.contacts\" "
+                + "class=\"android.widget.FrameLayout\" text=\"\" bounds=\"[0,0][1080,2400]\">\n"
+                + "<android.widget.TextView index=\"0\" package=\"com.google.android.contacts\" "
+                + "class=\"android.widget.TextView\" text=\"Contacts\" resource-id=\"com.google.android.contacts:id/toolbar_title\" "
+                + "bounds=\"[48,96][320,160]\"/>\n"
+                + "<android.widget.EditText index=\"1\" package=\"com.google.android.contacts\" "
+                + "class=\"android.widget.EditText\" text=\"Search contacts\" resource-id=\"com.google.android.contacts:id/open_search_bar\" "
+                + "bounds=\"[48,180][1032,300]\"/>\n"
+                + "<androidx.recyclerview.widget.RecyclerView index=\"2\" package=\"com.google.android.contacts\" "
+                + "class=\"androidx.recyclerview.widget.RecyclerView\" resource-id=\"android:id/list\" bounds=\"[0,320][1080,2200]\">\n");
+        for (int i = 0; i < contactCount; i++) {
+            int top = 320 + i * 140;
+            xml.append("<android.view.ViewGroup index=\"").append(i).append("\" class=\"android.view.ViewGroup\" ")
+                    .append("clickable=\"true\" content-desc=\"Contact ").append(i).append("\" bounds=\"[0,")
+                    .append(top).append("][1080,").append(top + 140).append("]\">\n")
+                    .append("<android.widget.TextView index=\"0\" class=\"android.widget.TextView\" text=\"Contact ")
+                    .append(i).append("\" resource-id=\"com.google.android.contacts:id/cliv_name_textview\"/>\n")
+                    .append("</android.view.ViewGroup>\n");
+        }
+        xml.append("</androidx.recyclerview.widget.RecyclerView>\n")
+                .append("<android.widget.ImageButton index=\"3\" class=\"android.widget.ImageButton\" ")
+                .append("content-desc=\"Create contact\" resource-id=\"com.google.android.contacts:id/floating_action_button\" ")
+                .append("bounds=\"[840,2100][1032,2292]\"/>\n")
+                .append("</android.widget.FrameLayout>\n</hierarchy>");
+        return xml.toString();
+    }
+
+    /**
+     * A phone-sized frame with a toolbar and list rows, so encoders see realistic content
+     */
+    private static byte[] screenshotPng(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(new Color(26, 115, 232));
+        graphics.fillRect(0, 0, width, 200);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 48));
+        for (int row = 0; row < 14; row++) {
+            int top = 240 + row * 150;
+            graphics.setColor(new Color((row * 53) % 255, (row * 97) % 255, (row * 31) % 255));
+            graphics.fillOval(48, top, 110, 110);
+            graphics.setColor(Color.DARK_GRAY);
+            graphics.drawString("Contact " + row, 200, top + 70);
+        }
+        graphics.dispose();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", output);
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
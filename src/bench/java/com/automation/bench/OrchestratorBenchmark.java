@@ -0,0 +1,101 @@
+package com.automation.bench;
+
+import com.automation.base.DeviceOrchestrator;
+import com.automation.base.DeviceRegistry;
+import io.appium.java_client.AppiumBy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.OutputType;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeviceOrchestrator scaling: a round of TESTS_PER_DEVICE tests on every device, each test a
+ * full session against the fake Appium server with a per-command delay standing in for the
+ * device, and a screenshot forked into the background. The time of a round stays flat as
+ * devices are added while the orchestrator keeps up; platform threads are there to compare.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrchestratorBenchmark {
+
+    private static final int TESTS_PER_DEVICE = 4;
+
+    @Param({"8", "64"})
+    int devices;
+
+    @Param({"virtual", "platform"})
+    String threads;
+
+    @Param({"20"})
+    int commandDelayMillis;
+
+    FakeAppiumServer server;
+    DeviceOrchestrator orchestrator;
+
+    /**
+     * Registers the fake devices through system properties, before ConfigReader loads in the forked JVM
+     */
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        server = new FakeAppiumServer(0, 120, Duration.ofMillis(commandDelayMillis));
+        StringJoiner udids = new StringJoiner(",");
+        for (int i = 0; i < devices; i++) {
+            udids.add("bench-device-" + i);
+        }
+        System.setProperty("devices", udids.toString());
+        System.setProperty("appium.server.url", server.getUrl().toString());
+        orchestrator = new DeviceOrchestrator(DeviceRegistry.getDevices(),
+                "virtual".equals(threads) ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        orchestrator.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int round() {
+        List<CompletableFuture<DeviceOrchestrator.Result>> results = new ArrayList<>();
+        for (int i = 0; i < devices * TESTS_PER_DEVICE; i++) {
+            results.add(orchestrator.submit("bench-" + i, scope -> {
+                scope.fork(() -> scope.getDriver().getScreenshotAs(OutputType.BYTES));
+                scope.getDriver().findElements(AppiumBy.id("com.google.android.contacts:id/cliv_name_textview"));
+                scope.getDriver().findElement(AppiumBy.accessibilityId("Create contact")).click();
+                scope.getDriver().getPageSource();
+            }));
+        }
+        int passed = 0;
+        for (CompletableFuture<DeviceOrchestrator.Result> result : results) {
+            if (result.join().status() == DeviceOrchestrator.Status.PASSED) {
+                passed++;
+            }
+        }
+        if (passed != results.size()) {
+            throw new IllegalStateException((results.size() - passed) + " of " + results.size() + " tests failed");
+        }
+        return passed;
+    }
+}
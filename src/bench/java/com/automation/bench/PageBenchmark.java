@@ -0,0 +1,85 @@
+package com.automation.bench;
+
+import com.automation.base.PageSnapshot;
+import com.automation.pages.ContactsPage;
+import io.appium.java_client.AppiumBy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Page object overhead: construction through the caching field decorator, BasePage click and
+ * sendKeys with their explicit waits, and parsing a page source snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageBenchmark {
+
+    @State(Scope.Thread)
+    public static class PageState {
+        ContactsPage page;
+        String pageSource;
+        Map<By, String> form = new LinkedHashMap<>();
+
+        @Setup
+        public void setup(DriverState state) {
+            page = new ContactsPage(state.driver);
+            pageSource = state.server.getPageSource();
+            form.put(AppiumBy.xpath("//android.widget.EditText[@text='First name']"), "Benchmark");
+            form.put(AppiumBy.xpath("//android.widget.EditText[@text='Last name']"), "User");
+            form.put(AppiumBy.xpath("//android.widget.EditText[@text='Phone']"), "5551234567");
+            form.put(AppiumBy.xpath("//android.widget.EditText[@text='Email']"), "bench@example.com");
+        }
+    }
+
+    @Benchmark
+    public ContactsPage constructPage(DriverState state) {
+        return new ContactsPage(state.driver);
+    }
+
+    @Benchmark
+    public void click(PageState state) {
+        state.page.clickAddContact();
+    }
+
+    @Benchmark
+    public void sendKeys(PageState state) {
+        state.page.enterFirstName("Benchmark");
+    }
+
+    /**
+     * The four contact fields one by one through BasePage.sendKeys, the baseline for fillForm
+     */
+    @Benchmark
+    public void fillFieldsOneByOne(PageState state) {
+        state.page.enterFirstName("Benchmark");
+        state.page.enterLastName("User");
+        state.page.enterPhoneNumber("5551234567");
+        state.page.enterEmail("bench@example.com");
+    }
+
+    @Benchmark
+    public void fillForm(PageState state) {
+        state.page.fillForm(state.form);
+    }
+
+    @Benchmark
+    public PageSnapshot parseSnapshot(PageState state) {
+        return PageSnapshot.parse(state.pageSource);
+    }
+}
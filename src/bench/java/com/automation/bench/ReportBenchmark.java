@@ -0,0 +1,63 @@
+package com.automation.bench;
+
+import com.automation.utils.ReportEventLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording a report event on the test thread, alone and with 16 threads recording.
+ * Uses the event log behind ExtentReportManager directly: the manager renders the whole run
+ * to HTML at JVM exit, which would dominate the benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class EventLog {
+        Path file;
+        ReportEventLog log;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            file = Files.createTempFile("bench", ".events.jsonl");
+            log = new ReportEventLog(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            log.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public void recordEvent(EventLog state) {
+        state.log.append("info", 1, "Clicked add contact button", null, null, null);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void recordEventContended(EventLog state) {
+        state.log.append("info", Thread.currentThread().getId(), "Clicked add contact button", null, null, null);
+    }
+}
@@ -0,0 +1,92 @@
+package com.automation.bench;
+
+import com.automation.utils.PerceptualHash;
+import com.automation.utils.ScreenshotEncoder;
+import com.automation.utils.ScreenshotUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Screenshot pipeline: encoding and hashing on their own, and ScreenshotUtils capture as seen
+ * by the test thread, both for a frame that is stored and for a duplicate that is skipped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScreenshotBenchmark {
+
+    private static final String PREFIX = "bench_";
+
+    @State(Scope.Thread)
+    public static class Frame {
+        byte[] png;
+        ScreenshotEncoder.Policy jpeg = new ScreenshotEncoder.Policy("jpg", 80, 1280, false, 240);
+
+        @Setup
+        public void setup(DriverState state) {
+            png = state.server.getScreenshotPng();
+        }
+
+        /**
+         * Wait for the writer, then remove the files written by the capture benchmarks
+         */
+        @TearDown(Level.Trial)
+        public void cleanUp() throws IOException {
+            ScreenshotUtils.drain();
+            Path dir = Paths.get("test-output/screenshots");
+            if (Files.isDirectory(dir)) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        if (file.getFileName().toString().startsWith(PREFIX)) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeJpeg(Frame frame) throws IOException {
+        return ScreenshotEncoder.encode(frame.png, frame.jpeg);
+    }
+
+    @Benchmark
+    public byte[] thumbnail(Frame frame) throws IOException {
+        return ScreenshotEncoder.thumbnail(frame.png, frame.jpeg);
+    }
+
+    @Benchmark
+    public byte[] perceptualHash(Frame frame) throws IOException {
+        return PerceptualHash.of(frame.png);
+    }
+
+    @Benchmark
+    public String captureStored(Frame frame) {
+        return ScreenshotUtils.takeFailureScreenshot(PREFIX + "stored");
+    }
+
+    @Benchmark
+    public ScreenshotUtils.Screenshot captureDuplicate(Frame frame) {
+        return ScreenshotUtils.capture(PREFIX + "duplicate");
+    }
+}
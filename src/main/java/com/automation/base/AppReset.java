@@ -0,0 +1,18 @@
+package com.automation.base;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Reset level for a test class or method, overriding reset.level.
+ * E.g. {@code @AppReset(ResetLevel.CLEAR_DATA)} on a test that needs an empty contact list.
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface AppReset {
+    ResetLevel value();
+}
@@ -1,10 +1,17 @@
 package com.automation.base;
 
+import com.automation.utils.ConfigReader;
+import io.appium.java_client.AppiumBy;
 import io.appium.java_client.android.AndroidDriver;
-import io.appium.java_client.pagefactory.AppiumFieldDecorator;
+import io.appium.java_client.android.nativekey.AndroidKey;
+import io.appium.java_client.android.nativekey.KeyEvent;
 import org.openqa.selenium.By;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.Actions;
+import org.openqa.selenium.remote.RemoteWebElement;
 import org.openqa.selenium.support.PageFactory;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
@@ -12,6 +19,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Base Page class that all page object classes should extend
@@ -21,15 +30,21 @@ public class BasePage {
     
     protected AndroidDriver driver;
     protected WebDriverWait wait;
+    protected UiWait uiWait;
+    protected boolean snapshotMode = ConfigReader.getBooleanProperty("locator.snapshot.enabled");
+    private PageSnapshot snapshot;
     protected static final Logger logger = LoggerFactory.getLogger(BasePage.class);
     protected static final int DEFAULT_WAIT_TIME = 10;
+    private final Duration explicitTimeout =
+            Duration.ofSeconds(ConfigReader.getIntProperty("explicit.wait.timeout", DEFAULT_WAIT_TIME));
     
     public BasePage() {
         this.driver = DriverManager.getDriver();
-        this.wait = new WebDriverWait(driver, Duration.ofSeconds(DEFAULT_WAIT_TIME));
+        this.wait = new WebDriverWait(driver, explicitTimeout);
+        this.uiWait = new UiWait(driver);
         
-        // Initialize page elements using Appium PageFactory
-        PageFactory.initElements(new AppiumFieldDecorator(driver), this);
+        // Initialize page elements, FindBy fields resolve through the element cache
+        PageFactory.initElements(new CachingFieldDecorator(driver), this);
     }
     
     /**
@@ -52,6 +67,8 @@ public class BasePage {
      */
     public void goBack() {
         driver.navigate().back();
+        invalidateSnapshot();
+        ElementCache.invalidate();
         logger.info("Navigated back");
     }
     
@@ -62,10 +79,11 @@ public class BasePage {
         try {
             if (driver.isKeyboardShown()) {
                 driver.hideKeyboard();
+                invalidateSnapshot();
                 logger.info("Keyboard hidden");
             }
         } catch (Exception e) {
-            logger.debug("Keyboard not shown or couldn't hide: " + e.getMessage());
+            logger.debug("Keyboard not shown or couldn't hide: {}", e.getMessage());
         }
     }
     
@@ -89,15 +107,89 @@ public class BasePage {
     }
     
     /**
-     * Find element safely without throwing exception
+     * Find element safely without throwing exception.
+     * The element is resolved through the element cache and re-found if it goes stale.
      */
     protected WebElement findElementSafely(By locator) {
-        try {
-            return driver.findElement(locator);
-        } catch (NoSuchElementException e) {
-            logger.debug("Element not found: " + locator);
-            return null;
+        WebElement element = ElementCache.find(driver, locator, this::findUncached);
+        return element != null ? CachingFieldDecorator.proxyFor(driver, locator) : null;
+    }
+    
+    private WebElement findUncached(By locator) {
+        WebElement element = WaitPolicy.await(driver, locator);
+        if (element == null) {
+            logger.debug("Element not found: {}", locator);
+        }
+        return element;
+    }
+    
+    /**
+     * Find the first of several alternative locators to appear. All alternatives are probed on
+     * every poll, so a miss costs one wait rather than one per alternative.
+     */
+    protected WebElement findFirst(By... locators) {
+        WebElement element = WaitPolicy.awaitAny(driver, locators);
+        if (element == null) {
+            logger.debug("None of the alternative locators matched: {}", (Object) locators);
+        }
+        return element;
+    }
+    
+    /**
+     * Opt in to answering read-only queries from a page source snapshot
+     */
+    public void enableSnapshotMode() {
+        this.snapshotMode = true;
+    }
+    
+    /**
+     * Snapshot of the current screen state, fetched once and reused until an interaction
+     */
+    protected PageSnapshot snapshot() {
+        if (snapshot == null) {
+            snapshot = PageSnapshot.capture(driver);
         }
+        return snapshot;
+    }
+    
+    /**
+     * Drop the cached snapshot, the screen may have changed
+     */
+    protected void invalidateSnapshot() {
+        snapshot = null;
+    }
+    
+    /**
+     * Check if any element matches the XPath, locally when snapshot mode is enabled
+     */
+    protected boolean isPresent(String xpath) {
+        if (snapshotMode) {
+            return snapshot().isPresent(xpath);
+        }
+        return findElementSafely(AppiumBy.xpath(xpath)) != null;
+    }
+    
+    /**
+     * Get the text of the first element matching the XPath, or null if there is none
+     */
+    protected String getText(String xpath) {
+        if (snapshotMode) {
+            return snapshot().getText(xpath);
+        }
+        WebElement element = findElementSafely(AppiumBy.xpath(xpath));
+        return element != null ? element.getText() : null;
+    }
+    
+    /**
+     * Find an element for an interaction. In snapshot mode the XPath is resolved locally
+     * to a stable resource-id or accessibility id locator before going to the device.
+     */
+    protected WebElement findForInteraction(String xpath) {
+        if (snapshotMode) {
+            By resolved = snapshot().resolve(xpath);
+            return resolved != null ? findElementSafely(resolved) : null;
+        }
+        return findElementSafely(AppiumBy.xpath(xpath));
     }
     
     /**
@@ -105,11 +197,12 @@ public class BasePage {
      */
     protected void click(WebElement element) {
         try {
-            wait.until(ExpectedConditions.elementToBeClickable(element));
+            interactionWait().until(ExpectedConditions.elementToBeClickable(element));
             element.click();
+            invalidateSnapshot();
             logger.debug("Clicked element successfully");
         } catch (Exception e) {
-            logger.error("Failed to click element: " + e.getMessage());
+            logger.error("Failed to click element: {}", e.getMessage());
             throw e;
         }
     }
@@ -119,24 +212,151 @@ public class BasePage {
      */
     protected void sendKeys(WebElement element, String text) {
         try {
-            wait.until(ExpectedConditions.visibilityOf(element));
+            interactionWait().until(ExpectedConditions.visibilityOf(element));
             element.clear();
             element.sendKeys(text);
-            logger.debug("Sent keys to element: " + text);
+            invalidateSnapshot();
+            logger.debug("Sent keys to element: {}", text);
         } catch (Exception e) {
-            logger.error("Failed to send keys to element: " + e.getMessage());
+            logger.error("Failed to send keys to element: {}", e.getMessage());
             throw e;
         }
     }
     
     /**
-     * Wait for element to be clickable
+     * Explicit wait for an interaction, clipped to what is left of the test's wait budget
      */
-    protected void waitForElementToBeClickable(int seconds) {
-        try {
-            Thread.sleep(seconds * 1000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    protected WebDriverWait interactionWait() {
+        return new WebDriverWait(driver, WaitPolicy.clip(explicitTimeout));
+    }
+    
+    /**
+     * Fill several form fields in as few round trips as possible. When the form has two or more
+     * XPath fields, or snapshot mode is on, XPath locators are resolved from one page source
+     * snapshot to id or accessibility id locators; a single XPath field is cheaper to look up
+     * directly than to fetch the page source for. Each value replaces the field content with a
+     * single mobile: replaceElementValue call instead of a wait, clear and per-character typing.
+     * Fields where that is not supported are typed through one chained W3C Actions request, or
+     * pasted from the clipboard when longer than form.paste.threshold.
+     * Once a field has to be typed, the fields after it are typed as well, so that fields are
+     * still filled in order.
+     *
+     * @param fields locator to value, filled in iteration order; null values are skipped
+     */
+    public void fillForm(Map<By, String> fields) {
+        Map<WebElement, String> toType = new LinkedHashMap<>();
+        long xpathFields = fields.entrySet().stream()
+                .filter(field -> field.getValue() != null && xpathOf(field.getKey()) != null)
+                .count();
+        boolean resolveFromSnapshot = snapshotMode || xpathFields > 1;
+        for (Map.Entry<By, String> field : fields.entrySet()) {
+            if (field.getValue() == null) {
+                continue;
+            }
+            By locator = field.getKey();
+            String xpath = resolveFromSnapshot ? xpathOf(locator) : null;
+            if (xpath != null) {
+                By resolved = snapshot().resolve(xpath);
+                if (resolved != null) {
+                    locator = resolved;
+                }
+            }
+            // Replacing a later field now would fill it before the ones still waiting to be typed
+            WebElement unreplaced = toType.isEmpty() ? replaceValue(locator, field.getValue()) : findField(locator);
+            if (unreplaced != null) {
+                toType.put(unreplaced, field.getValue());
+            }
+        }
+        if (!toType.isEmpty()) {
+            typeInto(toType);
+        }
+        invalidateSnapshot();
+        logger.debug("Filled {} form fields", fields.size());
+    }
+    
+    /**
+     * Replace the value of a field in one call, returning the element if it has to be typed instead
+     */
+    private WebElement replaceValue(By locator, String value) {
+        for (int attempt = 0; ; attempt++) {
+            WebElement element = findField(locator);
+            if (!(element instanceof RemoteWebElement)) {
+                return element;
+            }
+            try {
+                driver.executeScript("mobile: replaceElementValue",
+                        Map.of("elementId", ((RemoteWebElement) element).getId(), "text", value));
+                return null;
+            } catch (StaleElementReferenceException e) {
+                ElementCache.evictStale(locator);
+                if (attempt > 0) {
+                    throw e;
+                }
+            } catch (WebDriverException e) {
+                logger.debug("Cannot replace value of {}, typing instead: {}", locator, e.getMessage());
+                return element;
+            }
+        }
+    }
+    
+    private WebElement findField(By locator) {
+        WebElement element = ElementCache.find(driver, locator, this::findUncached);
+        if (element == null) {
+            throw new NoSuchElementException("Form field not found: " + locator);
         }
+        return element;
+    }
+    
+    /**
+     * Clear and type into fields in order, chaining the focus changes and key input into one Actions request
+     */
+    private void typeInto(Map<WebElement, String> fields) {
+        int pasteThreshold = ConfigReader.getIntProperty("form.paste.threshold", 64);
+        Actions actions = new Actions(driver);
+        boolean chained = false;
+        for (Map.Entry<WebElement, String> field : fields.entrySet()) {
+            WebElement element = field.getKey();
+            boolean paste = field.getValue().length() > pasteThreshold;
+            if (paste && chained) {
+                // The fields before a pasted one are typed first
+                actions.perform();
+                actions = new Actions(driver);
+                chained = false;
+            }
+            element.clear();
+            if (paste) {
+                driver.setClipboardText(field.getValue());
+                element.click();
+                driver.pressKey(new KeyEvent(AndroidKey.PASTE));
+            } else {
+                actions.click(element).sendKeys(field.getValue());
+                chained = true;
+            }
+        }
+        if (chained) {
+            actions.perform();
+        }
+    }
+    
+    /**
+     * The XPath expression of an XPath locator, or null for other strategies
+     */
+    private static String xpathOf(By locator) {
+        String description = locator.toString();
+        return locator instanceof By.ByXPath ? description.substring(description.indexOf(':') + 1).trim() : null;
+    }
+    
+    /**
+     * Wait until the UI settles, for at most the given number of seconds
+     */
+    protected void waitForElementToBeClickable(int seconds) {
+        waitForUiToSettle(Duration.ofSeconds(seconds));
+    }
+    
+    /**
+     * Wait until the page source stops changing, returning early on a fast device
+     */
+    protected boolean waitForUiToSettle(Duration deadline) {
+        return uiWait.waitForIdle(deadline);
     }
 }
@@ -1,13 +1,24 @@
 package com.automation.base;
 
+import com.automation.metrics.CommandMetrics;
+import com.automation.transport.AppiumTransport;
 import com.automation.utils.ConfigReader;
 import com.automation.utils.ExtentReportManager;
+import com.automation.utils.LogContext;
 import com.automation.utils.ScreenshotUtils;
 import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.testng.ITestResult;
 import org.testng.annotations.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
 /**
  * Base Test class that all test classes should extend
  * Handles driver setup, teardown, and common test operations
@@ -16,59 +27,100 @@ public class BaseTest {
     
     protected static final Logger logger = LoggerFactory.getLogger(BaseTest.class);
     protected AndroidDriver driver;
+    protected StepRunner steps;
     
     @BeforeSuite
     public void beforeSuite() {
         logger.info("Starting test suite execution");
-        ExtentReportManager.initializeReport();
         
-        // Start Appium server if configured to do so
-        String startServer = ConfigReader.getProperty("start.appium.server");
-        if ("true".equalsIgnoreCase(startServer)) {
-            DriverManager.startAppiumServer();
-        }
+        // Report, Appium servers and devices, in parallel in the fast startup mode
+        SuiteStartup.start();
     }
     
     @BeforeClass
     public void beforeClass() {
-        logger.info("Setting up test class: " + this.getClass().getSimpleName());
+        logger.info("Setting up test class: {}", this.getClass().getSimpleName());
     }
     
     @BeforeMethod
-    public void beforeMethod() {
-        logger.info("Starting test method");
+    public void beforeMethod(Method method) {
+        String testName = getClass().getSimpleName() + "." + method.getName();
+        LogContext.setTest(testName);
+        logger.info("Starting test method: {}", method.getName());
+        CommandMetrics.startTest(getClass().getSimpleName(), testName);
+        WaitPolicy.startTest(testName);
         
-        // Initialize driver for each test
-        DriverManager.initializeDriver();
+        // A retry resuming from a failed step keeps the session of the failed attempt
+        steps = StepRunner.begin(testName);
+        if (!steps.isResuming() || !DriverManager.isDriverInitialized()) {
+            // Start a session, or reset the app in a warm one, at the test's reset level
+            long sessionStart = System.nanoTime();
+            DriverManager.initializeDriver(ResetLevel.resolve(getClass(), method));
+            steps.setSessionStartMillis((System.nanoTime() - sessionStart) / 1_000_000);
+        }
         driver = DriverManager.getDriver();
+        SuiteStartup.firstTestReady();
         
-        // Create test entry in extent report
-        ExtentReportManager.createTest(getClass().getSimpleName());
+        // Create test entry in extent report, named per method so parallel runs render in a stable order
+        ExtentReportManager.createTest(testName);
+        UiWait.clearRecordedWaits();
+        ElementCache.invalidate();
+        ScreenshotUtils.resetTestContext();
     }
     
     @AfterMethod
-    public void afterMethod() {
+    public void afterMethod(ITestResult result) {
         logger.info("Finishing test method");
+        logWaitSummary();
+        String elementWaits = WaitPolicy.endTest();
+        if (elementWaits != null) {
+            logger.info(elementWaits);
+            ExtentReportManager.logInfo(elementWaits);
+        }
+        CommandMetrics.endTest();
         
-        // Quit driver after each test
+        // Keep the session for a retry that resumes from the failed step
+        if (result.wasRetried() && steps != null && steps.isResumePending()) {
+            logger.info("Keeping the session for the retry of {}", result.getName());
+            LogContext.clearTest();
+            return;
+        }
+        StepRunner.end();
+        
+        // Quit driver after each test, or return it to the session pool
         DriverManager.quitDriver();
+        LogContext.clearTest();
     }
     
     @AfterClass
     public void afterClass() {
-        logger.info("Tearing down test class: " + this.getClass().getSimpleName());
+        logger.info("Tearing down test class: {}", this.getClass().getSimpleName());
     }
     
     @AfterSuite
     public void afterSuite() {
         logger.info("Finishing test suite execution");
         
+        logger.info(ElementCache.getStatsSummary());
+        logger.info(WaitPolicy.getSuiteSummary());
+        logger.info(StepRunner.getSuiteSummary());
+        logger.info(AppiumTransport.getStatsSummary());
+        logger.info(ScreenshotUtils.getBufferSummary());
+        
+        // Quit any warm sessions kept by the session pool
+        DriverManager.shutdownSessions();
+        
         // Stop Appium server if it was started
         String startServer = ConfigReader.getProperty("start.appium.server");
         if ("true".equalsIgnoreCase(startServer)) {
             DriverManager.stopAppiumServer();
         }
         
+        // Wait for queued screenshots to reach the disk before the report is written
+        ScreenshotUtils.drain();
+        
+        CommandMetrics.export();
+        
         // Flush extent reports
         ExtentReportManager.flushReports();
     }
@@ -82,15 +134,89 @@ public class BaseTest {
     }
     
     /**
-     * Take screenshot with custom name
+     * Run a test step; see StepRunner
+     */
+    protected void step(String name, Runnable action) {
+        steps.step(name, action);
+    }
+    
+    /**
+     * Run a test step that starts from the state its precondition checks, making it a checkpoint a retry can resume at
+     */
+    protected void step(String name, BooleanSupplier precondition, Runnable action) {
+        steps.step(name, precondition, action);
+    }
+    
+    /**
+     * Check once, without waiting, whether an element is on screen, e.g. in step preconditions
+     */
+    protected boolean isPresentNow(By locator) {
+        return WaitPolicy.isPresentNow(driver, locator);
+    }
+    
+    /**
+     * Find an element through the wait policy, throwing NoSuchElementException if it does not appear
+     */
+    protected WebElement findElement(By locator) {
+        return WaitPolicy.find(driver, locator);
+    }
+    
+    /**
+     * Find the first of several alternative locators to appear, or null; the alternatives share one wait
+     */
+    protected WebElement findFirst(By... locators) {
+        return WaitPolicy.awaitAny(driver, locators);
+    }
+    
+    /**
+     * Wait until the UI settles, for at most the given number of seconds
+     */
+    protected boolean waitForUiToSettle(int maxSeconds) {
+        return new UiWait(driver).waitForIdle(Duration.ofSeconds(maxSeconds));
+    }
+    
+    /**
+     * Report how long the test spent waiting for the UI to settle
+     */
+    private void logWaitSummary() {
+        List<UiWait.WaitRecord> waits = UiWait.getRecordedWaits();
+        if (waits.isEmpty()) {
+            return;
+        }
+        long totalMillis = waits.stream().mapToLong(UiWait.WaitRecord::elapsedMillis).sum();
+        long timedOut = waits.stream().filter(w -> !w.settled()).count();
+        String summary = "UI waits: " + waits.size() + " waits, " + totalMillis + " ms total, " + timedOut + " timed out";
+        logger.info(summary);
+        ExtentReportManager.logInfo(summary);
+    }
+    
+    /**
+     * Take screenshot with custom name, only kept in memory unless the test fails when screenshot.buffer.frames is set
      */
     protected void takeScreenshot(String screenshotName) {
         try {
-            String screenshotPath = ScreenshotUtils.takeScreenshot(screenshotName);
-            ExtentReportManager.addScreenshot(screenshotPath);
-            logger.info("Screenshot taken: " + screenshotName);
+            if (ScreenshotUtils.isBuffering()) {
+                ScreenshotUtils.buffer(screenshotName);
+                return;
+            }
+            ScreenshotUtils.Screenshot screenshot = ScreenshotUtils.capture(screenshotName);
+            ExtentReportManager.addScreenshot(screenshot.path(), screenshot.thumbnailPath());
+            logger.info("Screenshot taken: {}", screenshotName);
+        } catch (Exception e) {
+            logger.error("Failed to take screenshot: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Take a screenshot of a single element's region
+     */
+    protected void takeElementScreenshot(WebElement element, String screenshotName) {
+        try {
+            ScreenshotUtils.Screenshot screenshot = ScreenshotUtils.captureElement(element, screenshotName);
+            ExtentReportManager.addScreenshot(screenshot.path(), screenshot.thumbnailPath());
+            logger.info("Element screenshot taken: {}", screenshotName);
         } catch (Exception e) {
-            logger.error("Failed to take screenshot: " + e.getMessage());
+            logger.error("Failed to take element screenshot: {}", e.getMessage());
         }
     }
 }
@@ -0,0 +1,107 @@
+package com.automation.base;
+
+import io.appium.java_client.pagefactory.AppiumFieldDecorator;
+import org.openqa.selenium.By;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Locatable;
+import org.openqa.selenium.support.FindAll;
+import org.openqa.selenium.support.FindBy;
+import org.openqa.selenium.support.FindBys;
+import org.openqa.selenium.support.pagefactory.Annotations;
+import org.openqa.selenium.support.pagefactory.FieldDecorator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Page factory decorator whose WebElement proxies resolve through the ElementCache.
+ * Fields annotated with Selenium's FindBy, FindBys or FindAll get a caching proxy that
+ * retries once with a fresh lookup on a stale element. Everything else, such as Appium
+ * specific annotations and lists, is left to the AppiumFieldDecorator. XPath locators are
+ * compiled into native lookups by the LocatorCompiler where possible.
+ */
+public class CachingFieldDecorator implements FieldDecorator {
+
+    private final WebDriver driver;
+    private final AppiumFieldDecorator appiumDecorator;
+
+    public CachingFieldDecorator(WebDriver driver) {
+        this.driver = driver;
+        this.appiumDecorator = new AppiumFieldDecorator(driver);
+    }
+
+    @Override
+    public Object decorate(ClassLoader loader, Field field) {
+        if (!WebElement.class.equals(field.getType()) || !hasSeleniumLocator(field)) {
+            return appiumDecorator.decorate(loader, field);
+        }
+        // Compiled once here, at page construction, rather than on every lookup
+        return proxyFor(driver, LocatorCompiler.compile(new Annotations(field).buildBy()));
+    }
+    
+    /**
+     * Create a WebElement proxy that resolves the locator through the ElementCache
+     */
+    public static WebElement proxyFor(WebDriver driver, By locator) {
+        return (WebElement) Proxy.newProxyInstance(CachingFieldDecorator.class.getClassLoader(),
+                new Class<?>[] {WebElement.class, WrapsElement.class, Locatable.class},
+                new CachingElementHandler(driver, locator));
+    }
+
+    private static boolean hasSeleniumLocator(Field field) {
+        return field.isAnnotationPresent(FindBy.class)
+                || field.isAnnotationPresent(FindBys.class)
+                || field.isAnnotationPresent(FindAll.class);
+    }
+
+    /**
+     * Resolves the element through the cache on every call, retrying once if it went stale
+     */
+    private static final class CachingElementHandler implements InvocationHandler {
+        private final WebDriver driver;
+        private final By locator;
+
+        CachingElementHandler(WebDriver driver, By locator) {
+            this.driver = driver;
+            this.locator = locator;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("toString".equals(method.getName()) && method.getParameterCount() == 0) {
+                return "Proxy element for: " + locator;
+            }
+            // Identity of the proxy itself, so page elements in sets and maps never touch the device
+            if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            try {
+                return invokeOnElement(method, args);
+            } catch (StaleElementReferenceException e) {
+                ElementCache.evictStale(locator);
+                return invokeOnElement(method, args);
+            }
+        }
+
+        private Object invokeOnElement(Method method, Object[] args) throws Throwable {
+            WebElement element = ElementCache.find(driver, locator, missing -> WaitPolicy.find(driver, missing));
+            if ("getWrappedElement".equals(method.getName())) {
+                return element;
+            }
+            try {
+                return method.invoke(element, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.automation.base;
+
+/**
+ * An Android device the suite can run on, with the ports reserved for its Appium session
+ *
+ * @param udid            adb serial of the device
+ * @param appiumPort      port of the Appium server driving this device
+ * @param systemPort      UiAutomator2 server port forwarded for this device
+ * @param mjpegServerPort MJPEG screen streaming port forwarded for this device
+ */
+public record Device(String udid, int appiumPort, int systemPort, int mjpegServerPort) {
+    
+    @Override
+    public String toString() {
+        return udid + " (appium " + appiumPort + ", system " + systemPort + ", mjpeg " + mjpegServerPort + ")";
+    }
+}
@@ -0,0 +1,406 @@
+package com.automation.base;
+
+import com.automation.utils.ConfigReader;
+import com.automation.utils.LogContext;
+import io.appium.java_client.android.AndroidDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Drives many device sessions from one JVM. Every device gets a worker that leases it and runs
+ * submitted tests one after another, each on its own Appium session. Workers, the background
+ * work a test forks (screenshots, log pulls) and health probes all run on virtual threads, so a
+ * thread blocked on an Appium call costs a parked continuation rather than a platform thread.
+ * Each test runs in a {@link TestScope}: a failing fork or the test timeout
+ * (orchestrator.test.timeout.seconds) cancels the test and everything it forked, and the test
+ * only completes once all of its forks have.
+ */
+public class DeviceOrchestrator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceOrchestrator.class);
+    private static final Task STOP = new Task(null, null, null);
+
+    private final List<Device> devices;
+    private final ThreadFactory workerFactory;
+    private final ThreadFactory taskFactory;
+    private final BlockingDeque<Task> queue = new LinkedBlockingDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final Set<Device> unhealthy = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final Duration testTimeout;
+    private volatile boolean closed;
+    private Thread prober;
+
+    public enum Status {
+        PASSED, FAILED, CANCELLED
+    }
+
+    /**
+     * Outcome of a test run by the orchestrator
+     *
+     * @param name   test name given on submit
+     * @param udid   device the test ran on, null when it never ran
+     * @param status passed, failed, or cancelled before it ran
+     * @param millis time from taking the test off the queue to its scope closing
+     * @param error  the test's or first fork's failure, or null
+     */
+    public record Result(String name, String udid, Status status, long millis, Throwable error) {
+    }
+
+    /**
+     * A test body, run on a device worker with the session already started
+     */
+    @FunctionalInterface
+    public interface DeviceTest {
+        void run(TestScope scope) throws Exception;
+    }
+
+    private record Task(String name, DeviceTest test, CompletableFuture<Result> result) {
+    }
+
+    /**
+     * Orchestrate all registered devices on virtual threads
+     */
+    public DeviceOrchestrator() {
+        this(DeviceRegistry.getDevices());
+    }
+
+    /**
+     * Orchestrate the given registered devices on virtual threads
+     */
+    public DeviceOrchestrator(List<Device> devices) {
+        this(devices, Thread.ofVirtual());
+    }
+
+    /**
+     * Orchestrate the given registered devices on threads of the given kind, platform threads
+     * being there to compare against
+     */
+    public DeviceOrchestrator(List<Device> devices, Thread.Builder threads) {
+        this.devices = List.copyOf(devices);
+        this.workerFactory = threads.name("device-worker-", 0).factory();
+        this.taskFactory = threads.name("device-task-", 0).factory();
+        this.testTimeout = Duration.ofSeconds(ConfigReader.getIntProperty("orchestrator.test.timeout.seconds", 600));
+        for (Device device : this.devices) {
+            Thread worker = workerFactory.newThread(() -> work(device));
+            workers.add(worker);
+            activeWorkers.incrementAndGet();
+            worker.start();
+        }
+        logger.info("Device orchestrator started {} worker(s)", workers.size());
+    }
+
+    /**
+     * Queue a test for the next free healthy device
+     */
+    public CompletableFuture<Result> submit(String name, DeviceTest test) {
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        if (closed || activeWorkers.get() == 0) {
+            result.complete(new Result(name, null, Status.CANCELLED, 0, null));
+            return result;
+        }
+        queue.add(new Task(name, test, result));
+        // The last worker may have exited and cancelled the queue just before the add
+        if (activeWorkers.get() == 0) {
+            cancelQueued();
+        }
+        return result;
+    }
+
+    /**
+     * Probe every healthy device at the given interval, each probe on its own virtual thread.
+     * A device whose probe fails or throws takes no further tests.
+     */
+    public void startHealthProbes(Predicate<Device> probe, Duration interval) {
+        prober = Thread.ofVirtual().name("device-health-probe").start(() -> {
+            while (!closed) {
+                List<Thread> probes = new ArrayList<>();
+                for (Device device : devices) {
+                    if (!unhealthy.contains(device)) {
+                        probes.add(Thread.ofVirtual().name("device-health-" + device.udid())
+                                .start(() -> probe(probe, device)));
+                    }
+                }
+                try {
+                    for (Thread thread : probes) {
+                        thread.join();
+                    }
+                    Thread.sleep(interval.toMillis());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    public Set<Device> getUnhealthyDevices() {
+        return Set.copyOf(unhealthy);
+    }
+
+    /**
+     * Let the workers finish the queued tests, then stop them
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < workers.size(); i++) {
+            queue.add(STOP);
+        }
+        if (prober != null) {
+            prober.interrupt();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cancelQueued();
+        logger.info("Device orchestrator stopped");
+    }
+
+    private void probe(Predicate<Device> probe, Device device) {
+        boolean healthy;
+        try {
+            healthy = probe.test(device);
+        } catch (RuntimeException e) {
+            healthy = false;
+        }
+        if (!healthy && unhealthy.add(device)) {
+            logger.warn("Device {} failed its health probe and takes no further tests", device.udid());
+        }
+    }
+
+    /**
+     * Worker loop of one device: run queued tests until stopped or unhealthy
+     */
+    private void work(Device device) {
+        try {
+            while (true) {
+                Task task = queue.take();
+                if (task == STOP) {
+                    return;
+                }
+                if (unhealthy.contains(device)) {
+                    // Hand the test to a healthy device, ahead of the stop signals
+                    queue.addFirst(task);
+                    return;
+                }
+                task.result().complete(run(task, device));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                cancelQueued();
+            }
+        }
+    }
+
+    private Result run(Task task, Device device) {
+        long start = System.nanoTime();
+        TestScope scope = new TestScope(task.name(), device);
+        LogContext.setTest(task.name());
+        try {
+            // Leased per test, since quitting the session gives the device back to the registry
+            DeviceRegistry.lease(device);
+            // A session of its own per test, never one of the warm session pool's limited slots
+            DriverManager.initializeDriver(ResetLevel.RESTART_SESSION);
+            scope.driver = DriverManager.getDriver();
+            task.test().run(scope);
+            scope.joinForks();
+        } catch (Throwable e) {
+            scope.fail(e);
+        } finally {
+            scope.close();
+            DriverManager.quitDriver();
+            LogContext.clearTest();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Throwable error = scope.failure;
+        if (error != null) {
+            logger.warn("Test {} failed on {} after {} ms: {}", task.name(), device.udid(), millis, error);
+        }
+        return new Result(task.name(), device.udid(), error == null ? Status.PASSED : Status.FAILED, millis, error);
+    }
+
+    private void cancelQueued() {
+        Task task;
+        while ((task = queue.poll()) != null) {
+            if (task != STOP) {
+                task.result().complete(new Result(task.name(), null, Status.CANCELLED, 0, null));
+            }
+        }
+    }
+
+    /**
+     * The lifetime of one test on its worker. Work forked from the test runs on its own thread
+     * and cannot outlive the test: the first failure, of the test or of any fork, cancels the
+     * rest, and closing the scope waits for every fork to stop. Forks do not see the worker's
+     * thread-local driver and device, they take them from the scope.
+     */
+    public final class TestScope {
+
+        private final String name;
+        private final Device device;
+        private final Thread owner = Thread.currentThread();
+        private final Thread watchdog;
+        private final List<FutureTask<?>> forks = new ArrayList<>();
+        private final List<Thread> forkThreads = new ArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile AndroidDriver driver;
+        private volatile Throwable failure;
+        private boolean done;
+
+        private TestScope(String name, Device device) {
+            this.name = name;
+            this.device = device;
+            this.watchdog = Thread.ofVirtual().name("test-watchdog-" + device.udid()).start(() -> {
+                try {
+                    Thread.sleep(testTimeout.toMillis());
+                    fail(new TimeoutException("Test " + name + " exceeded " + testTimeout.toSeconds() + " s"));
+                } catch (InterruptedException ignored) {
+                    // The test finished in time
+                }
+            });
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Device getDevice() {
+            return device;
+        }
+
+        public AndroidDriver getDriver() {
+            return driver;
+        }
+
+        /**
+         * Run background work for this test, its failure fails the test
+         */
+        public <T> Future<T> fork(Callable<T> work) {
+            Callable<T> logged = LogContext.propagate(work);
+            FutureTask<T> fork = new FutureTask<>(() -> {
+                try {
+                    return logged.call();
+                } catch (Throwable e) {
+                    fail(e);
+                    throw e;
+                }
+            });
+            lock.lock();
+            try {
+                if (done || failure != null) {
+                    fork.cancel(false);
+                    return fork;
+                }
+                Thread thread = taskFactory.newThread(fork);
+                forks.add(fork);
+                forkThreads.add(thread);
+                thread.start();
+            } finally {
+                lock.unlock();
+            }
+            return fork;
+        }
+
+        /**
+         * Whether the test was cancelled, for long running forks that poll rather than block
+         */
+        public boolean isCancelled() {
+            return failure != null;
+        }
+
+        /**
+         * Record the first failure and cancel the test and its other forks
+         */
+        void fail(Throwable error) {
+            lock.lock();
+            try {
+                if (failure != null || done) {
+                    return;
+                }
+                failure = error;
+                for (FutureTask<?> fork : forks) {
+                    fork.cancel(true);
+                }
+                if (Thread.currentThread() != owner) {
+                    owner.interrupt();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait for the forks the test left running
+         */
+        private void joinForks() throws InterruptedException {
+            for (Thread thread : snapshot()) {
+                thread.join();
+            }
+        }
+
+        /**
+         * Cancel what is still running, wait for it to stop and leave the worker's interrupt
+         * status clear for its next test
+         */
+        private void close() {
+            lock.lock();
+            try {
+                done = true;
+                for (FutureTask<?> fork : forks) {
+                    fork.cancel(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+            watchdog.interrupt();
+            boolean interrupted = false;
+            for (Thread thread : snapshot()) {
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted || Thread.interrupted()) {
+                logger.debug("Cleared interrupt of {} after test {}", owner.getName(), name);
+            }
+        }
+
+        private List<Thread> snapshot() {
+            lock.lock();
+            try {
+                return new ArrayList<>(forkThreads);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
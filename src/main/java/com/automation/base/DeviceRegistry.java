@@ -0,0 +1,157 @@
+package com.automation.base;
+
+import com.automation.utils.ConfigReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the devices available to the suite.
+ * Devices come from the comma separated "devices" property, or from "adb devices" when
+ * discovery is enabled, falling back to "device.name". Each test thread leases one device
+ * at a time so that parallel tests never share a device.
+ */
+public class DeviceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceRegistry.class);
+    private static volatile List<Device> devices;
+    private static final BlockingQueue<Device> available = new LinkedBlockingQueue<>();
+    private static final ThreadLocal<Device> leased = new ThreadLocal<>();
+
+    private DeviceRegistry() {
+    }
+
+    /**
+     * Get all registered devices, loading them on first use
+     */
+    public static List<Device> getDevices() {
+        if (devices == null) {
+            synchronized (DeviceRegistry.class) {
+                if (devices == null) {
+                    List<Device> loaded = loadDevices();
+                    available.addAll(loaded);
+                    devices = Collections.unmodifiableList(loaded);
+                    logger.info("Registered {} device(s): {}", loaded.size(), loaded);
+                }
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Lease a device for the current thread, blocking until one is free
+     */
+    public static Device acquire() {
+        Device current = leased.get();
+        if (current != null) {
+            return current;
+        }
+        getDevices();
+        int timeout = ConfigReader.getIntProperty("device.acquire.timeout.seconds", 300);
+        try {
+            Device device = available.poll(timeout, TimeUnit.SECONDS);
+            if (device == null) {
+                throw new IllegalStateException("No device became available within " + timeout + " seconds");
+            }
+            leased.set(device);
+            logger.info("Thread {} leased device {}", Thread.currentThread().getName(), device.udid());
+            return device;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a device", e);
+        }
+    }
+
+    /**
+     * Lease a given device for the current thread, for orchestrator workers that each own one device
+     */
+    static void lease(Device device) {
+        getDevices();
+        if (!available.remove(device)) {
+            throw new IllegalStateException("Device " + device.udid() + " is not registered or already leased");
+        }
+        leased.set(device);
+        logger.info("Thread {} leased device {}", Thread.currentThread().getName(), device.udid());
+    }
+
+    /**
+     * Get the device leased by the current thread, or null
+     */
+    public static Device current() {
+        return leased.get();
+    }
+
+    /**
+     * Give the current thread's device back to the registry
+     */
+    public static void release() {
+        Device device = leased.get();
+        if (device != null) {
+            leased.remove();
+            available.offer(device);
+        }
+    }
+
+    private static List<Device> loadDevices() {
+        List<String> udids = new ArrayList<>();
+        String configured = ConfigReader.getProperty("devices", "");
+        for (String udid : configured.split(",")) {
+            if (!udid.trim().isEmpty()) {
+                udids.add(udid.trim());
+            }
+        }
+        if (udids.isEmpty() && "true".equalsIgnoreCase(ConfigReader.getProperty("devices.discover", "false"))) {
+            udids.addAll(discoverAdbDevices());
+        }
+        if (udids.isEmpty()) {
+            udids.add(ConfigReader.getProperty("device.name", "emulator-5554"));
+        }
+
+        boolean ownServers = "true".equalsIgnoreCase(ConfigReader.getProperty("start.appium.server"));
+        int appiumBase = ConfigReader.getIntProperty("appium.server.port", 4723);
+        int systemBase = ConfigReader.getIntProperty("device.system.port.base", 8200);
+        int mjpegBase = ConfigReader.getIntProperty("device.mjpeg.port.base", 7810);
+
+        List<Device> result = new ArrayList<>();
+        for (String udid : udids) {
+            // An external server drives every device, only servers we start get their own port
+            int appiumPort = ownServers ? PortAllocator.allocate(appiumBase) : PortAllocator.reserve(appiumBase);
+            result.add(new Device(udid, appiumPort,
+                    PortAllocator.allocate(systemBase), PortAllocator.allocate(mjpegBase)));
+        }
+        return result;
+    }
+
+    /**
+     * List the serials of devices in the "device" state reported by adb
+     */
+    private static List<String> discoverAdbDevices() {
+        List<String> udids = new ArrayList<>();
+        try {
+            Process process = new ProcessBuilder("adb", "devices").redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.trim().split("\\s+");
+                    if (parts.length == 2 && "device".equals(parts[1])) {
+                        udids.add(parts[0]);
+                    }
+                }
+            }
+            process.waitFor(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("Device discovery through adb failed: {}", e.getMessage());
+        }
+        return udids;
+    }
+}
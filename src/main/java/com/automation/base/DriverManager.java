@@ -1,15 +1,29 @@
 package com.automation.base;
 
+import com.automation.metrics.CommandMetrics;
+import com.automation.metrics.TimedCommandExecutor;
+import com.automation.transport.AppiumTransport;
+import com.automation.utils.ConfigReader;
+import com.automation.utils.LogContext;
+import io.appium.java_client.MobileCommand;
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
+import io.appium.java_client.remote.AppiumCommandExecutor;
 import io.appium.java_client.service.local.AppiumDriverLocalService;
 import io.appium.java_client.service.local.AppiumServiceBuilder;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.http.HttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Driver Manager class to handle Appium driver initialization and management
@@ -18,39 +32,122 @@ public class DriverManager {
     
     private static final Logger logger = LoggerFactory.getLogger(DriverManager.class);
     private static ThreadLocal<AndroidDriver> driver = new ThreadLocal<>();
-    private static AppiumDriverLocalService service;
+    private static final Map<String, AppiumDriverLocalService> services = new ConcurrentHashMap<>();
+    private static volatile SessionPool sessionPool;
+    private static final ThreadLocal<ResetLevel> currentResetLevel = new ThreadLocal<>();
+    private static final Set<String> warmDevices = ConcurrentHashMap.newKeySet();
+    /** Capabilities that only change how fast a session starts, not which session it is */
+    private static final Set<String> STARTUP_CAPABILITIES = Set.of(
+            "appium:skipServerInstallation", "appium:skipDeviceInitialization");
     
     /**
-     * Initialize Android driver with capabilities
+     * Initialize Android driver with the configured reset level
      */
     public static void initializeDriver() {
+        initializeDriver(ResetLevel.fromConfig());
+    }
+    
+    /**
+     * Initialize Android driver with capabilities on a device leased for the current thread.
+     * Below RESTART_SESSION a warm session is taken from the pool and the app is reset in it
+     * at the given level, escalating while the app is not back on its launch activity.
+     */
+    public static void initializeDriver(ResetLevel resetLevel) {
+        Device device = DeviceRegistry.acquire();
+        // Config lookups on this thread now see the device's profile
+        ConfigReader.bindDevice(device.udid());
+        LogContext.setDevice(device.udid());
         try {
-            UiAutomator2Options options = new UiAutomator2Options();
-            
-            // Basic capabilities
-            options.setPlatformName("Android");
-            options.setDeviceName("emulator-5554"); // This can be overridden by actual device name
-            options.setAutomationName("UiAutomator2");
-            
-            // Launch Contacts app
-            options.setAppPackage("com.google.android.contacts");
-            options.setAppActivity("com.android.contacts.activities.PeopleActivity");
-            
-            // Optional capabilities
-            options.setNewCommandTimeout(Duration.ofSeconds(300));
-            options.setNoReset(true); // Don't reset app state
-            
-            // Initialize driver
-            URL appiumServerURL = new URL("http://127.0.0.1:4723");
-            driver.set(new AndroidDriver(appiumServerURL, options));
-            
-            // Set implicit wait
-            getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
+            UiAutomator2Options options = buildOptions(device);
+            URL serverUrl = getServerUrl(device);
+            currentResetLevel.set(resetLevel);
+            if (resetLevel.keepsSession()) {
+                String key = sessionKey(serverUrl, options);
+                Supplier<AndroidDriver> factory = () -> createDriver(serverUrl, options);
+                AndroidDriver pooled = getSessionPool().borrow(key, factory);
+                if (getSessionPool().isReused(pooled)) {
+                    pooled = resetApp(pooled, resetLevel, key, factory);
+                }
+                driver.set(pooled);
+                LogContext.setSession(pooled.getSessionId());
+                warmDevices.add(device.udid());
+                logger.info("Android driver taken from session pool for device {}", device.udid());
+                return;
+            }
+            driver.set(createDriver(serverUrl, options));
+            LogContext.setSession(driver.get().getSessionId());
+            warmDevices.add(device.udid());
+            logger.info("Android driver initialized successfully on device {}", device.udid());
+        } catch (RuntimeException e) {
+            currentResetLevel.remove();
+            ConfigReader.unbindDevice();
+            LogContext.clearDevice();
+            DeviceRegistry.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Build the UiAutomator2 capabilities used for every session on the given device,
+     * from the configuration with the device's profile applied
+     */
+    private static UiAutomator2Options buildOptions(Device device) {
+        ConfigReader.Snapshot config = ConfigReader.forDevice(device.udid());
+        UiAutomator2Options options = new UiAutomator2Options();
+        
+        // Basic capabilities
+        options.setPlatformName(config.get("platform.name", "Android"));
+        options.setDeviceName(device.udid());
+        options.setUdid(device.udid());
+        options.setAutomationName(config.get("automation.name", "UiAutomator2"));
+        
+        // Per-device ports so parallel sessions never collide on the host
+        options.setSystemPort(device.systemPort());
+        options.setMjpegServerPort(device.mjpegServerPort());
+        
+        // App under test
+        options.setAppPackage(config.get("app.package"));
+        options.setAppActivity(config.get("app.activity"));
+        
+        // Optional capabilities
+        options.setNewCommandTimeout(Duration.ofSeconds(config.getInt("new.command.timeout.seconds", 300)));
+        options.setNoReset(config.getBoolean("no.reset")); // Don't reset app state
+        
+        if (SuiteStartup.isFast()) {
+            options.setDisableWindowAnimation(true);
+            // The first session installed the UiAutomator2 server and prepared the device, later ones need not check again
+            if (warmDevices.contains(device.udid())) {
+                options.setSkipServerInstallation(true);
+                options.setSkipDeviceInitialization(true);
+            }
+        }
+        return options;
+    }
+    
+    /**
+     * Create a new Appium session
+     */
+    private static AndroidDriver createDriver(URL serverUrl, UiAutomator2Options options) {
+        try {
+            // Sessions share kept-alive connections and per-lane timeouts through the transport
+            HttpClient.Factory transport = AppiumTransport.isEnabled()
+                    ? AppiumTransport.shared() : HttpCommandExecutor.getDefaultClientFactory();
+            // Time every command when metrics are enabled, the driver type stays the same
+            AppiumCommandExecutor executor = CommandMetrics.isEnabled()
+                    ? new TimedCommandExecutor(serverUrl, transport)
+                    : new AppiumCommandExecutor(MobileCommand.commandRepository, serverUrl, transport);
+            AndroidDriver androidDriver = new AndroidDriver(executor, options);
             
-            logger.info("Android driver initialized successfully");
+            // Element waits are handled by the WaitPolicy, an implicit wait would stack inside every one of them
+            int implicitWait = ConfigReader.getIntProperty("implicit.wait.timeout", 0);
+            if (implicitWait > 0) {
+                logger.warn("implicit.wait.timeout is {} s, every element probe will wait that long", implicitWait);
+                androidDriver.manage().timeouts().implicitlyWait(Duration.ofSeconds(implicitWait));
+            }
+            return androidDriver;
             
         } catch (Exception e) {
-            logger.error("Failed to initialize Android driver: " + e.getMessage());
+            logger.error("Failed to initialize Android driver: {}", e.getMessage());
             throw new RuntimeException("Driver initialization failed", e);
         }
     }
@@ -63,45 +160,239 @@ public class DriverManager {
     }
     
     /**
-     * Start Appium server programmatically
+     * Get the device leased by the current thread, or null
+     */
+    public static Device getCurrentDevice() {
+        return DeviceRegistry.current();
+    }
+    
+    /**
+     * Start one Appium server per registered device, each on its own port
      */
     public static void startAppiumServer() {
+        for (Device device : DeviceRegistry.getDevices()) {
+            startAppiumServer(device);
+        }
+    }
+    
+    private static void startAppiumServer(Device device) {
         try {
             AppiumServiceBuilder builder = new AppiumServiceBuilder()
                     .withIPAddress("127.0.0.1")
-                    .usingPort(4723)
+                    .usingPort(device.appiumPort())
                     .withArgument(() -> "--base-path", "/")
-                    .withTimeout(Duration.ofSeconds(30));
+                    .withTimeout(Duration.ofSeconds(ConfigReader.getIntProperty("appium.server.start.timeout.seconds", 60)));
             
-            service = AppiumDriverLocalService.buildService(builder);
+            AppiumDriverLocalService service = AppiumDriverLocalService.buildService(builder);
             service.start();
+            services.put(device.udid(), service);
             
-            logger.info("Appium server started on http://127.0.0.1:4723");
+            logger.info("Appium server for {} started on {}", device.udid(), service.getUrl());
             
         } catch (Exception e) {
-            logger.error("Failed to start Appium server: " + e.getMessage());
+            logger.error("Failed to start Appium server for {}: {}", device.udid(), e.getMessage());
             throw new RuntimeException("Appium server start failed", e);
         }
     }
     
     /**
-     * Stop Appium server
+     * Stop all Appium servers started by the framework
      */
     public static void stopAppiumServer() {
-        if (service != null && service.isRunning()) {
-            service.stop();
-            logger.info("Appium server stopped");
+        for (Map.Entry<String, AppiumDriverLocalService> entry : services.entrySet()) {
+            if (entry.getValue().isRunning()) {
+                entry.getValue().stop();
+                logger.info("Appium server for {} stopped", entry.getKey());
+            }
+        }
+        services.clear();
+    }
+    
+    /**
+     * Server driving the device: its own service if we started one, otherwise the configured server
+     */
+    private static URL getServerUrl(Device device) {
+        AppiumDriverLocalService service = services.get(device.udid());
+        if (service != null) {
+            return service.getUrl();
+        }
+        try {
+            return new URL(ConfigReader.getProperty("appium.server.url", "http://127.0.0.1:4723"));
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid appium.server.url", e);
         }
     }
     
     /**
-     * Quit driver and clean up
+     * Quit driver and clean up, or hand it back to the pool when its reset level keeps the session
      */
     public static void quitDriver() {
         if (driver.get() != null) {
-            driver.get().quit();
-            driver.remove();
-            logger.info("Driver quit successfully");
+            try {
+                ResetLevel resetLevel = currentResetLevel.get();
+                if (resetLevel != null && resetLevel.keepsSession()) {
+                    getSessionPool().release(driver.get());
+                    logger.info("Driver returned to session pool");
+                } else {
+                    driver.get().quit();
+                    logger.info("Driver quit successfully");
+                }
+            } finally {
+                driver.remove();
+                currentResetLevel.remove();
+                ConfigReader.unbindDevice();
+                LogContext.clearDevice();
+                DeviceRegistry.release();
+            }
+        }
+    }
+    
+    /**
+     * Quit all pooled sessions and close their connections, called once at the end of the suite
+     */
+    public static void shutdownSessions() {
+        if (sessionPool != null) {
+            sessionPool.close();
+        }
+        AppiumTransport.shutdown();
+    }
+    
+    /**
+     * The warm session pool, holding at least one session per registered device so that
+     * parallel tests never evict each other's sessions
+     */
+    private static SessionPool getSessionPool() {
+        if (sessionPool == null) {
+            synchronized (DriverManager.class) {
+                if (sessionPool == null) {
+                    sessionPool = new SessionPool(
+                            Math.max(ConfigReader.getIntProperty("session.pool.max.size", 4),
+                                    DeviceRegistry.getDevices().size()),
+                            Duration.ofSeconds(ConfigReader.getIntProperty("session.pool.max.idle.seconds", 300)),
+                            Duration.ofSeconds(ConfigReader.getIntProperty("session.pool.borrow.timeout.seconds", 120)));
+                }
+            }
+        }
+        return sessionPool;
+    }
+    
+    /**
+     * Pool key made of the server address and the full, ordered capability set, leaving out
+     * startup capabilities so sessions from before and after the device warmed up match
+     */
+    private static String sessionKey(URL serverUrl, UiAutomator2Options options) {
+        Map<String, Object> capabilities = new TreeMap<>(options.asMap());
+        capabilities.keySet().removeAll(STARTUP_CAPABILITIES);
+        return serverUrl + " " + capabilities;
+    }
+    
+    /**
+     * Bring a reused session back to the app launch state, as a new session would be, escalating
+     * through stronger reset levels while the app is not back; the last resort is a new session
+     */
+    private static AndroidDriver resetApp(AndroidDriver session, ResetLevel requested, String key,
+                                          Supplier<AndroidDriver> factory) {
+        if (requested == ResetLevel.NONE) {
+            return session;
+        }
+        String appPackage = ConfigReader.getProperty("app.package");
+        for (ResetLevel level = requested; level != ResetLevel.RESTART_SESSION; level = level.stronger()) {
+            long start = System.nanoTime();
+            try {
+                applyReset(session, level, appPackage);
+                if (isAppReady(session, appPackage)) {
+                    recordReset(level, start);
+                    if (level != requested) {
+                        logger.info("App reset escalated from {} to {}", requested, level);
+                    }
+                    return session;
+                }
+                logger.warn("App not back on its launch activity after {} reset, escalating", level);
+            } catch (RuntimeException e) {
+                logger.warn("{} reset failed, escalating: {}", level, e.getMessage());
+            }
+        }
+        long start = System.nanoTime();
+        getSessionPool().invalidate(session);
+        AndroidDriver restarted = getSessionPool().borrow(key, factory);
+        recordReset(ResetLevel.RESTART_SESSION, start);
+        logger.warn("App reset escalated from {} to a new session", requested);
+        return restarted;
+    }
+    
+    /**
+     * Reset the app in the current thread's session at the given level, without escalating;
+     * returns whether the app is back on its launch activity
+     */
+    public static boolean resetAppInPlace(ResetLevel level) {
+        AndroidDriver androidDriver = driver.get();
+        if (androidDriver == null || level == ResetLevel.NONE || !level.keepsSession()) {
+            return false;
+        }
+        String appPackage = ConfigReader.getProperty("app.package");
+        long start = System.nanoTime();
+        try {
+            applyReset(androidDriver, level, appPackage);
+        } catch (RuntimeException e) {
+            logger.warn("{} reset failed: {}", level, e.getMessage());
+            return false;
+        }
+        boolean ready = isAppReady(androidDriver, appPackage);
+        recordReset(level, start);
+        return ready;
+    }
+    
+    private static void applyReset(AndroidDriver androidDriver, ResetLevel level, String appPackage) {
+        switch (level) {
+            case DEEP_LINK:
+                String url = ConfigReader.getProperty("reset.deep.link.url", "").trim();
+                if (url.isEmpty()) {
+                    // Bring the launch activity to the front of the running task, the process keeps running
+                    androidDriver.executeScript("mobile: startActivity", Map.of(
+                            "intent", appPackage + "/" + ConfigReader.getProperty("app.activity"),
+                            "flags", "0x14000000"));
+                } else {
+                    androidDriver.executeScript("mobile: deepLink", Map.of("url", url, "package", appPackage));
+                }
+                break;
+            case RELAUNCH:
+                androidDriver.terminateApp(appPackage);
+                androidDriver.activateApp(appPackage);
+                break;
+            case CLEAR_DATA:
+                androidDriver.executeScript("mobile: clearApp", Map.of("appId", appPackage));
+                androidDriver.activateApp(appPackage);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Health check after a reset: the app under test is in front, on its launch activity
+     */
+    private static boolean isAppReady(AndroidDriver androidDriver, String appPackage) {
+        String activity = ConfigReader.getProperty("reset.expected.activity", "").trim();
+        if (activity.isEmpty()) {
+            activity = ConfigReader.getProperty("app.activity");
+        }
+        String expected = activity.substring(activity.lastIndexOf('.') + 1);
+        Duration timeout = Duration.ofMillis(ConfigReader.getIntProperty("reset.health.timeout.ms", 3000));
+        return SuiteStartup.poll(() -> {
+            try {
+                return appPackage.equals(androidDriver.getCurrentPackage())
+                        && androidDriver.currentActivity().endsWith(expected);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }, timeout);
+    }
+    
+    private static void recordReset(ResetLevel level, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        logger.info("App reset {} took {} ms", level, nanos / 1_000_000);
+        if (CommandMetrics.isEnabled()) {
+            CommandMetrics.record("appReset[" + level + "]", nanos);
         }
     }
     
@@ -0,0 +1,115 @@
+package com.automation.base;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Per-thread cache of resolved elements for the current screen, keyed by locator.
+ * Saves the find round trip when a page object touches the same element repeatedly.
+ * Entries are dropped when the app navigates, when the page source generation changes,
+ * when the driver session changes or when an element turns out to be stale.
+ */
+public class ElementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElementCache.class);
+    private static final ThreadLocal<ElementCache> current = ThreadLocal.withInitial(ElementCache::new);
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder staleEvictions = new LongAdder();
+
+    private final Map<By, WebElement> elements = new HashMap<>();
+    private WebDriver owner;
+    private int generation;
+
+    private ElementCache() {
+    }
+
+    /**
+     * Get the cached element for the locator, resolving it with the finder on a miss.
+     * A finder result of null is not cached.
+     */
+    public static WebElement find(WebDriver driver, By locator, Function<By, WebElement> finder) {
+        ElementCache cache = forDriver(driver);
+        WebElement element = cache.elements.get(locator);
+        if (element != null) {
+            hits.increment();
+            return element;
+        }
+        misses.increment();
+        element = finder.apply(locator);
+        if (element != null) {
+            cache.elements.put(locator, element);
+        }
+        return element;
+    }
+
+    /**
+     * Drop a single entry after its element was found to be stale
+     */
+    public static void evictStale(By locator) {
+        if (current.get().elements.remove(locator) != null) {
+            staleEvictions.increment();
+            logger.debug("Evicted stale element for {}", locator);
+        }
+    }
+
+    /**
+     * Drop every entry for the current thread, e.g. after navigation
+     */
+    public static void invalidate() {
+        current.get().elements.clear();
+    }
+
+    /**
+     * Record the page source generation seen on this thread, invalidating the cache when it changed
+     */
+    public static void observeGeneration(int pageSourceGeneration) {
+        ElementCache cache = current.get();
+        if (cache.generation != pageSourceGeneration) {
+            cache.generation = pageSourceGeneration;
+            cache.elements.clear();
+        }
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getStaleEvictions() {
+        return staleEvictions.sum();
+    }
+
+    /**
+     * One line summary of the cache counters for logs and reports
+     */
+    public static String getStatsSummary() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        long hitRate = total == 0 ? 0 : Math.round(hitCount * 100.0 / total);
+        return "Element cache: " + hitCount + " hits, " + getMisses() + " misses (" + hitRate
+                + "% hit rate), " + getStaleEvictions() + " stale evictions";
+    }
+
+    private static ElementCache forDriver(WebDriver driver) {
+        ElementCache cache = current.get();
+        if (cache.owner != driver) {
+            // Element ids belong to a session, a new driver invalidates everything
+            cache.owner = driver;
+            cache.elements.clear();
+        }
+        return cache;
+    }
+}
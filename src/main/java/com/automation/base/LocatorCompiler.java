@@ -0,0 +1,394 @@
+package com.automation.base;
+
+import com.automation.metrics.CommandMetrics;
+import com.automation.utils.ConfigReader;
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rewrites simple XPath locators into native UiAutomator2 lookups.
+ * XPath makes the server serialize the whole hierarchy to XML for every lookup, while resource-id,
+ * accessibility id and UiSelector lookups run directly on the accessibility tree. Single-step
+ * expressions such as {@code //android.widget.EditText[@text='First name']} or
+ * {@code (//*[contains(@content-desc,'Save')])[2]} are compiled; anything else stays XPath.
+ * Each expression is analyzed once and warnings about brittle XPath are logged once.
+ * <p>
+ * With metrics enabled, lookups are timed per locator, and with locator.compiler.compare the first
+ * lookups of a compiled locator also run the original XPath, to show the gain and to check that
+ * both find the same element.
+ */
+public class LocatorCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocatorCompiler.class);
+    private static final String XPATH_PREFIX = "By.xpath: ";
+    private static final int COMPARE_LOOKUPS = 3;
+    private static final Map<String, By> compiled = new ConcurrentHashMap<>();
+    private static final Map<By, String> originals = new ConcurrentHashMap<>();
+    private static final Map<By, AtomicInteger> comparisons = new ConcurrentHashMap<>();
+
+    private LocatorCompiler() {
+    }
+
+    /**
+     * The fastest equivalent of a locator; non-XPath locators and XPath that cannot be compiled are returned as is
+     */
+    public static By compile(By locator) {
+        String description = locator.toString();
+        if (!description.startsWith(XPATH_PREFIX) || !ConfigReader.getBooleanProperty("locator.compiler.enabled")) {
+            return locator;
+        }
+        By result = compiled.get(description);
+        if (result == null) {
+            result = compiled.computeIfAbsent(description, key -> {
+                String xpath = key.substring(XPATH_PREFIX.length());
+                By rewritten = compileXPath(xpath);
+                if (rewritten == null) {
+                    return locator;
+                }
+                originals.put(rewritten, xpath);
+                logger.debug("Compiled XPath {} to {}", xpath, rewritten);
+                return rewritten;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Find elements with the compiled form of the locator, timing the lookup when metrics are enabled
+     */
+    public static List<WebElement> findElements(WebDriver driver, By locator) {
+        By target = compile(locator);
+        if (!CommandMetrics.isEnabled()) {
+            return driver.findElements(target);
+        }
+        long start = System.nanoTime();
+        List<WebElement> elements = driver.findElements(target);
+        String original = originals.get(target);
+        CommandMetrics.record("locator[" + strategyOf(target) + "] " + (original != null ? original : target),
+                System.nanoTime() - start);
+        if (original != null && ConfigReader.getBooleanProperty("locator.compiler.compare")) {
+            compareWithXPath(driver, target, original, elements);
+        }
+        return elements;
+    }
+
+    /**
+     * Compile an XPath expression, or return null if it has to stay XPath
+     */
+    static By compileXPath(String xpath) {
+        warnIfBrittle(xpath);
+        try {
+            XPathStep step = new Parser(xpath.trim()).parse();
+            return step != null ? step.toLocator() : null;
+        } catch (IllegalArgumentException e) {
+            logger.debug("XPath stays XPath: {} ({})", xpath, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void warnIfBrittle(String xpath) {
+        String expression = xpath.trim();
+        if (expression.startsWith("/") && !expression.startsWith("//")) {
+            logger.warn("Absolute XPath breaks on any layout change, prefer an id or text locator: {}", xpath);
+        } else if (stepCount(expression) > 2 && expression.matches(".*\\[\\d+\\].*")) {
+            logger.warn("Positional XPath path breaks on any layout change, prefer an id or text locator: {}", xpath);
+        } else if (expression.matches("//[\\w.*]+")) {
+            logger.warn("Unindexed XPath matches the first of any number of elements: {}", xpath);
+        }
+    }
+
+    private static int stepCount(String xpath) {
+        int steps = 0;
+        int depth = 0;
+        for (int i = 0; i < xpath.length(); i++) {
+            char c = xpath.charAt(i);
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            } else if (c == '/' && depth == 0 && (i == 0 || xpath.charAt(i - 1) != '/')) {
+                steps++;
+            }
+        }
+        return steps;
+    }
+
+    private static void compareWithXPath(WebDriver driver, By target, String xpath, List<WebElement> compiledResult) {
+        if (comparisons.computeIfAbsent(target, key -> new AtomicInteger()).incrementAndGet() > COMPARE_LOOKUPS) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<WebElement> xpathResult = driver.findElements(AppiumBy.xpath(xpath));
+        CommandMetrics.record("locator[xpath] " + xpath, System.nanoTime() - start);
+        if (!Objects.equals(firstId(compiledResult), firstId(xpathResult))) {
+            logger.warn("Compiled locator {} found a different element than XPath {}, set locator.compiler.enabled=false or use an explicit locator", target, xpath);
+        }
+    }
+
+    private static String firstId(List<WebElement> elements) {
+        if (elements.isEmpty()) {
+            return null;
+        }
+        WebElement first = elements.get(0);
+        return first instanceof RemoteWebElement ? ((RemoteWebElement) first).getId() : String.valueOf(first);
+    }
+
+    private static String strategyOf(By locator) {
+        String description = locator.toString();
+        int colon = description.indexOf(':');
+        String strategy = colon > 0 ? description.substring(0, colon) : description;
+        return strategy.substring(strategy.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * One location step with its conditions, the subset of XPath that maps onto UiSelector
+     */
+    private static final class XPathStep {
+        String className;
+        final List<String[]> conditions = new ArrayList<>();
+        int instance = -1;
+
+        By toLocator() {
+            if (className == null && instance < 0 && conditions.size() == 1) {
+                String[] only = conditions.get(0);
+                if (only[0].equals("resource-id") && only[1].equals("=")) {
+                    return AppiumBy.id(only[2]);
+                }
+                if (only[0].equals("content-desc") && only[1].equals("=")) {
+                    return AppiumBy.accessibilityId(only[2]);
+                }
+            }
+            StringBuilder selector = new StringBuilder("new UiSelector()");
+            if (className != null) {
+                selector.append(".className(").append(quote(className)).append(")");
+            }
+            for (String[] condition : conditions) {
+                selector.append(".").append(selectorMethod(condition[0], condition[1])).append("(")
+                        .append(isBooleanAttribute(condition[0]) ? condition[2] : quote(condition[2])).append(")");
+            }
+            if (instance >= 0) {
+                selector.append(".instance(").append(instance).append(")");
+            }
+            return AppiumBy.androidUIAutomator(selector.toString());
+        }
+
+        private static String selectorMethod(String attribute, String operator) {
+            String suffix = operator.equals("contains") ? "Contains" : operator.equals("starts-with") ? "StartsWith" : "";
+            switch (attribute) {
+                case "text":
+                    return "text" + suffix;
+                case "content-desc":
+                    return "description" + suffix;
+                case "resource-id":
+                    if (!suffix.isEmpty()) {
+                        throw new IllegalArgumentException("partial resource-id match");
+                    }
+                    return "resourceId";
+                case "class":
+                    if (!suffix.isEmpty()) {
+                        throw new IllegalArgumentException("partial class match");
+                    }
+                    return "className";
+                default:
+                    if (isBooleanAttribute(attribute) && suffix.isEmpty()) {
+                        return toCamelCase(attribute);
+                    }
+                    throw new IllegalArgumentException("unsupported attribute " + attribute);
+            }
+        }
+
+        private static boolean isBooleanAttribute(String attribute) {
+            switch (attribute) {
+                case "checkable":
+                case "checked":
+                case "clickable":
+                case "enabled":
+                case "focusable":
+                case "focused":
+                case "long-clickable":
+                case "scrollable":
+                case "selected":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static String toCamelCase(String attribute) {
+            int dash = attribute.indexOf('-');
+            return dash < 0 ? attribute
+                    : attribute.substring(0, dash) + Character.toUpperCase(attribute.charAt(dash + 1)) + attribute.substring(dash + 2);
+        }
+
+        private static String quote(String value) {
+            return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    /**
+     * Parser for {@code //step[cond and cond]} and {@code (//step[...])[n]}, rejecting everything else
+     */
+    private static final class Parser {
+        private final String input;
+        private int position;
+
+        Parser(String input) {
+            this.input = input;
+        }
+
+        XPathStep parse() {
+            boolean grouped = accept("(");
+            expect("//");
+            XPathStep step = new XPathStep();
+            String name = name();
+            if (!name.equals("*")) {
+                step.className = name;
+            }
+            while (accept("[")) {
+                if (Character.isDigit(peek())) {
+                    // //a[2] is a position among siblings, which UiSelector cannot express
+                    throw new IllegalArgumentException("sibling position");
+                }
+                do {
+                    step.conditions.add(condition());
+                } while (acceptWord("and"));
+                expect("]");
+            }
+            if (grouped) {
+                expect(")");
+                expect("[");
+                step.instance = Integer.parseInt(digits()) - 1;
+                expect("]");
+            }
+            skipSpaces();
+            if (position != input.length()) {
+                throw new IllegalArgumentException("more than one step");
+            }
+            if (step.conditions.isEmpty() && step.instance < 0) {
+                return null;
+            }
+            return step;
+        }
+
+        private String[] condition() {
+            skipSpaces();
+            if (accept("@")) {
+                String attribute = name();
+                expect("=");
+                return validated(attribute, "=", literal());
+            }
+            String function = name();
+            if (!function.equals("contains") && !function.equals("starts-with")) {
+                throw new IllegalArgumentException("unsupported function " + function);
+            }
+            expect("(");
+            expect("@");
+            String attribute = name();
+            expect(",");
+            String value = literal();
+            expect(")");
+            return validated(attribute, function, value);
+        }
+
+        private String[] validated(String attribute, String operator, String value) {
+            if (XPathStep.isBooleanAttribute(attribute) && !value.equals("true") && !value.equals("false")) {
+                throw new IllegalArgumentException("non-boolean value for " + attribute);
+            }
+            // Fails early for attributes UiSelector has no method for
+            XPathStep.selectorMethod(attribute, operator);
+            return new String[] {attribute, operator, value};
+        }
+
+        private String name() {
+            skipSpaces();
+            int start = position;
+            while (position < input.length()) {
+                char c = input.charAt(position);
+                if (Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-' || c == '*') {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            if (start == position) {
+                throw new IllegalArgumentException("name expected at " + start);
+            }
+            return input.substring(start, position);
+        }
+
+        private String digits() {
+            skipSpaces();
+            int start = position;
+            while (position < input.length() && Character.isDigit(input.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw new IllegalArgumentException("index expected at " + start);
+            }
+            return input.substring(start, position);
+        }
+
+        private String literal() {
+            skipSpaces();
+            char quote = peek();
+            if (quote != '\'' && quote != '"') {
+                throw new IllegalArgumentException("string literal expected at " + position);
+            }
+            int end = input.indexOf(quote, position + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("unterminated string literal");
+            }
+            String value = input.substring(position + 1, end);
+            position = end + 1;
+            return value;
+        }
+
+        private char peek() {
+            skipSpaces();
+            return position < input.length() ? input.charAt(position) : 0;
+        }
+
+        private boolean accept(String token) {
+            skipSpaces();
+            if (input.startsWith(token, position)) {
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptWord(String word) {
+            skipSpaces();
+            int end = position + word.length();
+            if (input.startsWith(word, position) && end < input.length() && Character.isWhitespace(input.charAt(end))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw new IllegalArgumentException("'" + token + "' expected at " + position);
+            }
+        }
+
+        private void skipSpaces() {
+            while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.automation.base;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.By;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed copy of the page source for one screen state.
+ * Presence, text and attribute queries are answered locally from the parsed tree, so a read
+ * heavy check costs one page source round trip instead of one XPath search per query.
+ * Only interactions go back to the device, using the most stable locator the snapshot can resolve.
+ */
+public class PageSnapshot {
+
+    private static final String RESOURCE_ID = "resource-id";
+    private static final String CONTENT_DESC = "content-desc";
+
+    // XPathExpression is not thread safe, so compiled expressions are cached per thread
+    private static final ThreadLocal<Map<String, XPathExpression>> compiled = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<DocumentBuilder> builders = ThreadLocal.withInitial(PageSnapshot::newBuilder);
+
+    private final Document document;
+    private final int generation;
+    private final Map<String, List<Element>> byResourceId = new HashMap<>();
+    private final Map<String, List<Element>> byContentDesc = new HashMap<>();
+
+    private PageSnapshot(Document document, int generation) {
+        this.document = document;
+        this.generation = generation;
+        index(document.getDocumentElement());
+    }
+
+    /**
+     * Fetch the page source once and parse it into an indexed snapshot
+     */
+    public static PageSnapshot capture(AndroidDriver driver) {
+        PageSnapshot snapshot = parse(driver.getPageSource());
+        ElementCache.observeGeneration(snapshot.getGeneration());
+        return snapshot;
+    }
+
+    /**
+     * Parse a page source string into an indexed snapshot
+     */
+    public static PageSnapshot parse(String pageSource) {
+        try {
+            Document document = builders.get().parse(new InputSource(new StringReader(pageSource)));
+            return new PageSnapshot(document, pageSource.hashCode());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to parse page source", e);
+        }
+    }
+
+    /**
+     * Hash of the page source this snapshot was built from, equal for identical screen states
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Whether at least one node matches the XPath
+     */
+    public boolean isPresent(String xpath) {
+        return select(xpath).getLength() > 0;
+    }
+
+    /**
+     * Number of nodes matching the XPath
+     */
+    public int count(String xpath) {
+        return select(xpath).getLength();
+    }
+
+    /**
+     * Text of the first node matching the XPath, or null if none matches
+     */
+    public String getText(String xpath) {
+        return getAttribute(xpath, "text");
+    }
+
+    /**
+     * Texts of all nodes matching the XPath, in document order
+     */
+    public List<String> getTexts(String xpath) {
+        NodeList nodes = select(xpath);
+        List<String> texts = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            texts.add(((Element) nodes.item(i)).getAttribute("text"));
+        }
+        return texts;
+    }
+
+    /**
+     * Attribute of the first node matching the XPath, or null if none matches
+     */
+    public String getAttribute(String xpath, String attribute) {
+        NodeList nodes = select(xpath);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        return ((Element) nodes.item(0)).getAttribute(attribute);
+    }
+
+    /**
+     * Resolve an XPath to the most stable locator for an interaction on the device:
+     * a unique resource-id, then a unique content-desc, otherwise the XPath itself.
+     *
+     * @return the locator, or null if the XPath matches nothing in this snapshot
+     */
+    public By resolve(String xpath) {
+        NodeList nodes = select(xpath);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        Element element = (Element) nodes.item(0);
+        String resourceId = element.getAttribute(RESOURCE_ID);
+        if (isUnique(byResourceId, resourceId)) {
+            return AppiumBy.id(resourceId);
+        }
+        String contentDesc = element.getAttribute(CONTENT_DESC);
+        if (isUnique(byContentDesc, contentDesc)) {
+            return AppiumBy.accessibilityId(contentDesc);
+        }
+        return AppiumBy.xpath(xpath);
+    }
+
+    private NodeList select(String xpath) {
+        try {
+            return (NodeList) compile(xpath).evaluate(document, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Invalid XPath: " + xpath, e);
+        }
+    }
+
+    private static XPathExpression compile(String xpath) throws XPathExpressionException {
+        Map<String, XPathExpression> cache = compiled.get();
+        XPathExpression expression = cache.get(xpath);
+        if (expression == null) {
+            expression = XPathFactory.newInstance().newXPath().compile(xpath);
+            cache.put(xpath, expression);
+        }
+        return expression;
+    }
+
+    private void index(Element element) {
+        addToIndex(byResourceId, element.getAttribute(RESOURCE_ID), element);
+        addToIndex(byContentDesc, element.getAttribute(CONTENT_DESC), element);
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i) instanceof Element child) {
+                index(child);
+            }
+        }
+    }
+
+    private static void addToIndex(Map<String, List<Element>> index, String key, Element element) {
+        if (!key.isEmpty()) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(element);
+        }
+    }
+
+    private static boolean isUnique(Map<String, List<Element>> index, String key) {
+        return !key.isEmpty() && index.getOrDefault(key, Collections.emptyList()).size() == 1;
+    }
+
+    private static DocumentBuilder newBuilder() {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            return factory.newDocumentBuilder();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create XML parser", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.automation.base;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hands out local ports that are free on the host and not already given to another device
+ */
+public class PortAllocator {
+    
+    private static final int SEARCH_RANGE = 200;
+    private static final Set<Integer> reserved = new HashSet<>();
+    
+    private PortAllocator() {
+    }
+    
+    /**
+     * Reserve the first free port at or above the base port
+     */
+    public static synchronized int allocate(int basePort) {
+        for (int port = basePort; port < basePort + SEARCH_RANGE; port++) {
+            if (!reserved.contains(port) && isFree(port)) {
+                reserved.add(port);
+                return port;
+            }
+        }
+        throw new IllegalStateException("No free port in range " + basePort + "-" + (basePort + SEARCH_RANGE - 1));
+    }
+    
+    /**
+     * Reserve a specific port without probing it, e.g. the port of an externally started server
+     */
+    public static synchronized int reserve(int port) {
+        reserved.add(port);
+        return port;
+    }
+    
+    private static boolean isFree(int port) {
+        try (ServerSocket socket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            socket.setReuseAddress(true);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
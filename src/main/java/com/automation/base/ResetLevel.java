@@ -0,0 +1,81 @@
+package com.automation.base;
+
+import com.automation.utils.ConfigReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * How the app is brought back to its launch state between tests, cheapest first.
+ * Every level below RESTART_SESSION keeps the Appium session in the session pool and resets
+ * the app inside it; if the app is not back on its launch activity afterwards, the reset
+ * escalates to the next level.
+ */
+public enum ResetLevel {
+    /** Leave the app as the previous test left it */
+    NONE,
+    /** Navigate back to the launch activity with a deep link or activity intent, without restarting the app */
+    DEEP_LINK,
+    /** Terminate and activate the app */
+    RELAUNCH,
+    /** Clear the app's data, then activate it */
+    CLEAR_DATA,
+    /** Quit the session and create a new one */
+    RESTART_SESSION;
+
+    private static final Logger logger = LoggerFactory.getLogger(ResetLevel.class);
+    private static final AtomicBoolean aliasWarned = new AtomicBoolean();
+
+    /**
+     * Whether the session outlives the test, to be reset in place for the next one
+     */
+    public boolean keepsSession() {
+        return this != RESTART_SESSION;
+    }
+
+    /**
+     * The next stronger level, RESTART_SESSION being the strongest
+     */
+    public ResetLevel stronger() {
+        return this == RESTART_SESSION ? this : values()[ordinal() + 1];
+    }
+
+    /**
+     * Level for a test method: its AppReset annotation, its class's, or the configured level
+     */
+    public static ResetLevel resolve(Class<?> testClass, Method method) {
+        AppReset reset = method.getAnnotation(AppReset.class);
+        if (reset == null) {
+            reset = testClass.getAnnotation(AppReset.class);
+        }
+        return reset != null ? reset.value() : fromConfig();
+    }
+
+    /**
+     * The reset.level property, e.g. "relaunch" or "clear-data". The deprecated session.policy is
+     * still read when reset.level is empty: pooled maps to relaunch, per-method to restart-session.
+     */
+    public static ResetLevel fromConfig() {
+        String value = ConfigReader.getProperty("reset.level", "").trim();
+        if (value.isEmpty()) {
+            String policy = ConfigReader.getProperty("session.policy", "").trim();
+            if (policy.isEmpty()) {
+                return RESTART_SESSION;
+            }
+            ResetLevel level = "pooled".equalsIgnoreCase(policy) ? RELAUNCH : RESTART_SESSION;
+            if (aliasWarned.compareAndSet(false, true)) {
+                logger.warn("session.policy is deprecated, use reset.level={} instead",
+                        level.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+            }
+            return level;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid reset.level: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.automation.base;
+
+import io.appium.java_client.android.AndroidDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of warm Appium sessions keyed by device and capabilities.
+ * Sessions are handed out to a test, returned afterwards and reused by the next
+ * test asking for the same key. Broken or long idle sessions are evicted.
+ * Guarded by a ReentrantLock rather than monitors, so virtual threads waiting for a session
+ * unmount instead of pinning their carrier thread.
+ */
+public class SessionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionPool.class);
+
+    private final int maxSize;
+    private final Duration maxIdle;
+    private final Duration borrowTimeout;
+
+    private final Map<String, Deque<PooledSession>> idle = new HashMap<>();
+    private final Map<AndroidDriver, PooledSession> leased = new IdentityHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int size;
+    private boolean closed;
+
+    public SessionPool(int maxSize, Duration maxIdle, Duration borrowTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Session pool size must be at least 1: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.maxIdle = maxIdle;
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * A session owned by the pool together with its bookkeeping
+     */
+    private static final class PooledSession {
+        final String key;
+        final AndroidDriver driver;
+        long lastReturned = System.nanoTime();
+        int uses;
+
+        PooledSession(String key, AndroidDriver driver) {
+            this.key = key;
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * Borrow a healthy session for the key, creating one with the factory if none is idle.
+     * Blocks while the pool is exhausted, up to the borrow timeout. Fails once the pool is closed.
+     */
+    public AndroidDriver borrow(String key, Supplier<AndroidDriver> factory) {
+        long deadline = System.nanoTime() + borrowTimeout.toNanos();
+        while (true) {
+            PooledSession candidate;
+            List<PooledSession> evicted = new ArrayList<>();
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("Session pool is closed, no session for " + key);
+                }
+                evictExpiredIdle(evicted);
+                candidate = pollIdle(key);
+                if (candidate == null) {
+                    if (size >= maxSize && !evictOldestIdle(evicted)) {
+                        // Nothing idle to evict, wait for a session to be released or discarded
+                        awaitRelease(deadline, key);
+                        continue;
+                    }
+                    // Reserve the slot now, the session itself is created outside the lock
+                    size++;
+                }
+            } finally {
+                lock.unlock();
+            }
+            evicted.forEach(session -> quitQuietly(session.driver));
+
+            if (candidate != null) {
+                if (isHealthy(candidate.driver)) {
+                    return lease(candidate);
+                }
+                logger.warn("Evicting broken pooled session for {}", key);
+                discard(candidate);
+                continue;
+            }
+
+            try {
+                AndroidDriver created = factory.get();
+                logger.info("Created new pooled session for {}", key);
+                return lease(new PooledSession(key, created));
+            } catch (RuntimeException e) {
+                lock.lock();
+                try {
+                    size--;
+                    released.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Return a session to the pool after a test, evicting it if it is no longer usable
+     */
+    public void release(AndroidDriver driver) {
+        PooledSession session = removeLeased(driver);
+        if (session == null) {
+            logger.warn("Session returned to pool was not borrowed from it, quitting it");
+            quitQuietly(driver);
+            return;
+        }
+
+        if (!isHealthy(driver)) {
+            logger.warn("Evicting broken session returned for {}", session.key);
+            discard(session);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (!closed) {
+                session.lastReturned = System.nanoTime();
+                idle.computeIfAbsent(session.key, k -> new ArrayDeque<>()).addFirst(session);
+                released.signalAll();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Returned after close, nothing would ever quit it from the idle list
+        discard(session);
+    }
+
+    /**
+     * Remove a borrowed session from the pool and quit it, e.g. after a session-level failure
+     */
+    public void invalidate(AndroidDriver driver) {
+        PooledSession session = removeLeased(driver);
+        if (session != null) {
+            discard(session);
+        } else {
+            quitQuietly(driver);
+        }
+    }
+
+    /**
+     * Quit every idle session. Sessions still leased are quit when they are released, later borrows fail.
+     */
+    public void close() {
+        Map<String, Deque<PooledSession>> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new HashMap<>(idle);
+            idle.clear();
+            // Waiting borrowers give up instead of waiting for sessions that will not come back
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Deque<PooledSession> sessions : toClose.values()) {
+            for (PooledSession session : sessions) {
+                discard(session);
+            }
+        }
+        logger.info("Session pool closed");
+    }
+
+    /**
+     * Whether the given driver was handed out by this pool and has been used by an earlier test
+     */
+    public boolean isReused(AndroidDriver driver) {
+        lock.lock();
+        try {
+            PooledSession session = leased.get(driver);
+            return session != null && session.uses > 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of live sessions, idle or leased
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AndroidDriver lease(PooledSession session) {
+        lock.lock();
+        try {
+            session.uses++;
+            leased.put(session.driver, session);
+            return session.driver;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledSession removeLeased(AndroidDriver driver) {
+        lock.lock();
+        try {
+            return leased.remove(driver);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledSession pollIdle(String key) {
+        Deque<PooledSession> sessions = idle.get(key);
+        return sessions == null ? null : sessions.pollFirst();
+    }
+
+    private void evictExpiredIdle(List<PooledSession> evicted) {
+        long now = System.nanoTime();
+        for (Deque<PooledSession> sessions : idle.values()) {
+            Iterator<PooledSession> iterator = sessions.iterator();
+            while (iterator.hasNext()) {
+                PooledSession session = iterator.next();
+                if (now - session.lastReturned > maxIdle.toNanos()) {
+                    iterator.remove();
+                    logger.info("Evicting idle session for {}", session.key);
+                    size--;
+                    evicted.add(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Make room by quitting the least recently returned idle session of any key
+     */
+    private boolean evictOldestIdle(List<PooledSession> evicted) {
+        PooledSession oldest = null;
+        for (Deque<PooledSession> sessions : idle.values()) {
+            PooledSession last = sessions.peekLast();
+            if (last != null && (oldest == null || last.lastReturned < oldest.lastReturned)) {
+                oldest = last;
+            }
+        }
+        if (oldest == null) {
+            return false;
+        }
+        idle.get(oldest.key).pollLast();
+        logger.info("Evicting idle session for {} to make room", oldest.key);
+        size--;
+        evicted.add(oldest);
+        return true;
+    }
+
+    private void awaitRelease(long deadline, String key) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new IllegalStateException("Timed out waiting for a pooled session for " + key
+                    + " (pool size " + maxSize + ")");
+        }
+        try {
+            released.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a pooled session", e);
+        }
+    }
+
+    private void discard(PooledSession session) {
+        quitQuietly(session.driver);
+        lock.lock();
+        try {
+            size--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isHealthy(AndroidDriver driver) {
+        try {
+            return driver.getSessionId() != null && driver.currentActivity() != null;
+        } catch (Exception e) {
+            logger.debug("Session health check failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void quitQuietly(AndroidDriver driver) {
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            logger.debug("Ignoring error while quitting session: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.automation.base;
+
+import com.automation.utils.ConfigReader;
+import org.openqa.selenium.InvalidArgumentException;
+import org.openqa.selenium.InvalidSelectorException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
+
+/**
+ * Retries a step-based test after a transient failure, such as a stale element or a tap that
+ * missed, up to step.retry.max times. The retry keeps the session and the StepRunner resumes it
+ * at the failed step. Assertion failures, broken locators and lost sessions are not retried, nor
+ * are tests that do not run as steps.
+ * Use with {@code @Test(retryAnalyzer = StepRetryAnalyzer.class)}.
+ */
+public class StepRetryAnalyzer implements IRetryAnalyzer {
+
+    @Override
+    public boolean retry(ITestResult result) {
+        StepRunner runner = StepRunner.current();
+        if (runner == null || runner.getFailedStep() < 0
+                || runner.getAttempt() >= ConfigReader.getIntProperty("step.retry.max", 1)
+                || !isTransient(result.getThrowable())) {
+            return false;
+        }
+        runner.markResume();
+        return true;
+    }
+
+    /**
+     * Whether the failure is a WebDriver error the same session can recover from
+     */
+    static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NoSuchSessionException || cause instanceof SessionNotCreatedException
+                    || cause instanceof InvalidSelectorException || cause instanceof InvalidArgumentException) {
+                return false;
+            }
+            if (cause instanceof WebDriverException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
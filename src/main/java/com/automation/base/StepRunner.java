@@ -0,0 +1,222 @@
+package com.automation.base;
+
+import com.automation.utils.ConfigReader;
+import com.automation.utils.ExtentReportManager;
+import com.automation.utils.LogContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs a test as named steps, each with an optional precondition describing the app state it
+ * starts from. A precondition that can be checked makes its step a checkpoint: when a step fails
+ * with a transient error, the StepRetryAnalyzer retries the test on the same session, and the
+ * retry skips ahead to the failed step, or the nearest earlier checkpoint whose precondition holds
+ * again, instead of starting over with a new session. Without any such checkpoint the app is
+ * relaunched in place and the steps run from the start. Steps keep their data in fields of the
+ * test, since a retry runs the test method again and only re-executes the steps it resumes at.
+ */
+public class StepRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StepRunner.class);
+    private static final ThreadLocal<StepRunner> current = new ThreadLocal<>();
+    private static final LongAdder suiteRetries = new LongAdder();
+    private static final AtomicLong suiteSavedMillis = new AtomicLong();
+
+    private final String testName;
+    private final List<BooleanSupplier> preconditions = new ArrayList<>();
+    private final List<Long> stepMillis = new ArrayList<>();
+    private long sessionStartMillis;
+    private int attempt;
+    private int nextStep;
+    private int failedStep = -1;
+    private int resumeAt = -1;
+    private boolean resumePending;
+
+    /**
+     * A step failure, with the step it happened in
+     */
+    public static class StepFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int stepIndex;
+
+        StepFailedException(String message, int stepIndex, Throwable cause) {
+            super(message, cause);
+            this.stepIndex = stepIndex;
+        }
+
+        public int getStepIndex() {
+            return stepIndex;
+        }
+    }
+
+    private StepRunner(String testName) {
+        this.testName = testName;
+    }
+
+    /**
+     * Start an attempt of a test on the current thread: a new runner, or the runner of the
+     * previous attempt when that one is being retried
+     */
+    public static StepRunner begin(String testName) {
+        StepRunner runner = current.get();
+        if (runner != null && runner.resumePending && runner.testName.equals(testName)) {
+            runner.resumePending = false;
+            runner.attempt++;
+            runner.nextStep = 0;
+            runner.resumeAt = -1;
+            return runner;
+        }
+        runner = new StepRunner(testName);
+        current.set(runner);
+        return runner;
+    }
+
+    /**
+     * The runner of the test on the current thread, or null
+     */
+    public static StepRunner current() {
+        return current.get();
+    }
+
+    /**
+     * Forget the current test's runner once it will not be retried
+     */
+    public static void end() {
+        current.remove();
+    }
+
+    /**
+     * Whether this attempt resumes a failed one on the session it kept
+     */
+    public boolean isResuming() {
+        return attempt > 0;
+    }
+
+    /**
+     * How long the first attempt took to get its session, the retry saves that much on top of skipped steps
+     */
+    public void setSessionStartMillis(long millis) {
+        if (attempt == 0) {
+            sessionStartMillis = millis;
+        }
+    }
+
+    /**
+     * Run a step whose starting state cannot be checked
+     */
+    public void step(String name, Runnable action) {
+        step(name, null, action);
+    }
+
+    /**
+     * Run a step, unless a retry resumes at a later checkpoint
+     */
+    public void step(String name, BooleanSupplier precondition, Runnable action) {
+        int index = nextStep++;
+        if (attempt == 0) {
+            preconditions.add(precondition);
+        }
+        if (isResuming() && resumeAt < 0) {
+            resumeAt = findResumePoint();
+        }
+        if (index < resumeAt) {
+            logger.info("Step {} '{}' skipped, retry resumes at step {}", index + 1, name, resumeAt + 1);
+            return;
+        }
+
+        ExtentReportManager.logInfo("Step " + (index + 1) + ": " + name);
+        long start = System.nanoTime();
+        // The wait budget and the log tag cover the failure handling too
+        WaitPolicy.Step budget = WaitPolicy.step(name,
+                Duration.ofSeconds(ConfigReader.getIntProperty("step.wait.budget.seconds", 60)));
+        MDC.MDCCloseable logStep = LogContext.step(name);
+        try {
+            action.run();
+        } catch (RuntimeException | AssertionError e) {
+            failedStep = index;
+            ExtentReportManager.logFail("Step " + (index + 1) + " '" + name + "' failed: " + e.getMessage());
+            throw new StepFailedException("Step " + (index + 1) + " '" + name + "' failed: " + e.getMessage(), index, e);
+        } finally {
+            logStep.close();
+            budget.close();
+        }
+        if (attempt == 0) {
+            stepMillis.add((System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Arrange for the next attempt to resume from the failed step, called by the retry analyzer
+     */
+    void markResume() {
+        resumePending = true;
+    }
+
+    /**
+     * Whether the session is kept for a retry of this test
+     */
+    public boolean isResumePending() {
+        return resumePending;
+    }
+
+    int getFailedStep() {
+        return failedStep;
+    }
+
+    int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * The failed step if its precondition holds, else the nearest earlier checkpoint that holds,
+     * else the first step after relaunching the app
+     */
+    private int findResumePoint() {
+        for (int index = Math.min(failedStep, preconditions.size() - 1); index > 0; index--) {
+            BooleanSupplier precondition = preconditions.get(index);
+            if (precondition != null && holds(precondition)) {
+                reportResume(index);
+                return index;
+            }
+        }
+        if (!DriverManager.resetAppInPlace(ResetLevel.RELAUNCH)) {
+            logger.warn("App relaunch before retrying {} did not reach the launch activity", testName);
+        }
+        reportResume(0);
+        return 0;
+    }
+
+    private void reportResume(int index) {
+        long savedMillis = sessionStartMillis;
+        for (int i = 0; i < index && i < stepMillis.size(); i++) {
+            savedMillis += stepMillis.get(i);
+        }
+        suiteRetries.increment();
+        suiteSavedMillis.addAndGet(savedMillis);
+        String message = "Retry " + attempt + " of " + testName + " resumes at step " + (index + 1)
+                + " on the same session, skipping " + index + " step(s), ~" + savedMillis + " ms saved";
+        logger.info(message);
+        ExtentReportManager.logWarning(message);
+    }
+
+    private static boolean holds(BooleanSupplier precondition) {
+        try {
+            return precondition.getAsBoolean();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    public static String getSuiteSummary() {
+        return "Step retries: " + suiteRetries.sum() + " resumed on their session, ~"
+                + suiteSavedMillis.get() / 1000 + " s saved against full reruns";
+    }
+}
@@ -0,0 +1,218 @@
+package com.automation.base;
+
+import com.automation.utils.ConfigReader;
+import com.automation.utils.ExtentReportManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Suite startup.
+ * In the fast startup mode the report, the Appium servers and the device checks are brought up
+ * in parallel, readiness is polled with backoff, and an Appium server that is already running is
+ * used instead of starting another one. The sequential mode starts everything one after the other.
+ * The time from suite start to the first test, and what it was spent on, goes to the report.
+ */
+public class SuiteStartup {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuiteStartup.class);
+    private static final long INITIAL_POLL_MILLIS = 50;
+    private static final long MAX_POLL_MILLIS = 1000;
+    private static final Map<String, Long> phases = new ConcurrentSkipListMap<>();
+    private static final AtomicBoolean firstTestReported = new AtomicBoolean();
+    private static volatile long suiteStartNanos;
+
+    private SuiteStartup() {
+    }
+
+    /**
+     * Whether the fast startup mode is configured
+     */
+    public static boolean isFast() {
+        return "fast".equalsIgnoreCase(ConfigReader.getProperty("startup.mode", "fast").trim());
+    }
+
+    /**
+     * Bring up everything the suite needs before its first test
+     */
+    public static void start() {
+        suiteStartNanos = System.nanoTime();
+        firstTestReported.set(false);
+        phases.clear();
+        boolean startServers = ConfigReader.getBooleanProperty("start.appium.server");
+        if (!isFast()) {
+            timed("report", ExtentReportManager::initializeReport);
+            if (startServers) {
+                timed("appium servers", DriverManager::startAppiumServer);
+            }
+            return;
+        }
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        tasks.add(CompletableFuture.runAsync(() -> timed("report", ExtentReportManager::initializeReport)));
+        tasks.add(CompletableFuture.runAsync(() -> timed("appium servers", () -> prepareServers(startServers))));
+        for (Device device : DeviceRegistry.getDevices()) {
+            tasks.add(CompletableFuture.runAsync(() -> timed("device " + device.udid(), () -> awaitDevice(device))));
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new RuntimeException("Suite startup failed", e.getCause());
+        }
+        logger.info("Suite startup took {} ms: {}", elapsedMillis(), phases);
+    }
+
+    /**
+     * Report the time to the first test, called once the first test has its session
+     */
+    public static void firstTestReady() {
+        if (suiteStartNanos == 0 || !firstTestReported.compareAndSet(false, true)) {
+            return;
+        }
+        long millis = elapsedMillis();
+        logger.info("Time to first test: {} ms", millis);
+        StringBuilder html = new StringBuilder("<table class='table table-sm'><tr><th>Phase</th><th>ms</th></tr>");
+        phases.forEach((phase, phaseMillis) ->
+                html.append("<tr><td>").append(phase).append("</td><td>").append(phaseMillis).append("</td></tr>"));
+        html.append("<tr><td><b>Time to first test</b></td><td><b>").append(millis).append("</b></td></tr></table>");
+        ExtentReportManager.addSummary("Suite Startup (" + (isFast() ? "fast" : "sequential") + ")", html.toString());
+    }
+
+    /**
+     * Use a server that already answers at appium.server.url, otherwise start our own.
+     * Without start.appium.server the configured server has to come up by itself, so only wait for it.
+     */
+    private static void prepareServers(boolean startServers) {
+        URL configured = configuredServerUrl();
+        if (isReady(configured)) {
+            logger.info("Using the Appium server already running at {}", configured);
+            return;
+        }
+        if (startServers) {
+            DriverManager.startAppiumServer();
+            return;
+        }
+        Duration timeout = Duration.ofSeconds(ConfigReader.getIntProperty("appium.server.start.timeout.seconds", 60));
+        if (!poll(() -> isReady(configured), timeout)) {
+            throw new RuntimeException("Appium server at " + configured + " not ready within " + timeout.toSeconds() + " s");
+        }
+    }
+
+    /**
+     * Wait for the device to finish booting; a missing adb only costs the check, not the suite
+     */
+    private static void awaitDevice(Device device) {
+        if (adb(device.udid(), "get-state") == null) {
+            logger.warn("adb is not available, skipping the boot check of {}", device.udid());
+            return;
+        }
+        Duration timeout = Duration.ofSeconds(ConfigReader.getIntProperty("startup.device.timeout.seconds", 120));
+        boolean booted = poll(() -> "1".equals(adb(device.udid(), "shell", "getprop", "sys.boot_completed")), timeout);
+        if (!booted) {
+            logger.warn("Device {} did not report a completed boot within {} s", device.udid(), timeout.toSeconds());
+        }
+    }
+
+    /**
+     * Probe an Appium server's status endpoint once
+     */
+    static boolean isReady(URL serverUrl) {
+        try {
+            URL status = serverUrl.toURI()
+                    .resolve(serverUrl.getPath().endsWith("/") ? "status" : serverUrl.getPath() + "/status").toURL();
+            HttpURLConnection connection = (HttpURLConnection) status.openConnection();
+            connection.setConnectTimeout(500);
+            connection.setReadTimeout(2000);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Poll a condition with backoff until it holds or the timeout runs out
+     */
+    static boolean poll(BooleanSupplier condition, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long pollMillis = INITIAL_POLL_MILLIS;
+        while (true) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(pollMillis, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            pollMillis = Math.min(MAX_POLL_MILLIS, pollMillis * 2);
+        }
+    }
+
+    /**
+     * First line of an adb command's output, or null if adb could not be run
+     */
+    private static String adb(String udid, String... command) {
+        List<String> args = new ArrayList<>(List.of("adb", "-s", udid));
+        args.addAll(List.of(command));
+        try {
+            Process process = new ProcessBuilder(args).redirectErrorStream(true).start();
+            String output;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                output = reader.readLine();
+            }
+            process.waitFor(10, TimeUnit.SECONDS);
+            return output == null ? "" : output.trim();
+        } catch (Exception e) {
+            logger.debug("adb {} failed: {}", args, e.getMessage());
+            return null;
+        }
+    }
+
+    private static URL configuredServerUrl() {
+        try {
+            return URI.create(ConfigReader.getProperty("appium.server.url", "http://127.0.0.1:4723")).toURL();
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid appium.server.url", e);
+        }
+    }
+
+    private static void timed(String phase, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            phases.put(phase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - suiteStartNanos);
+    }
+}
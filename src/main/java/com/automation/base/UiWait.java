@@ -0,0 +1,178 @@
+package com.automation.base;
+
+import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Wait engine that ends as soon as the UI settles instead of sleeping for a fixed time.
+ * Polls with exponential backoff until the page source or a target element stops changing,
+ * bounded by a deadline per call. Every wait is recorded with the time it actually took.
+ */
+public class UiWait {
+
+    private static final Logger logger = LoggerFactory.getLogger(UiWait.class);
+    private static final long INITIAL_POLL_MILLIS = 150;
+    private static final long MAX_POLL_MILLIS = 1000;
+    private static final double BACKOFF_FACTOR = 1.5;
+    private static final ThreadLocal<List<WaitRecord>> records = ThreadLocal.withInitial(ArrayList::new);
+
+    private final AndroidDriver driver;
+
+    /**
+     * A completed wait: what was waited for, how long it took and whether it settled before the deadline
+     */
+    public record WaitRecord(String description, long elapsedMillis, long deadlineMillis, boolean settled) {
+    }
+
+    public UiWait(AndroidDriver driver) {
+        this.driver = driver;
+    }
+
+    /**
+     * Wait until two consecutive page source snapshots are identical
+     *
+     * @return true if the UI settled before the deadline
+     */
+    public boolean waitForIdle(Duration deadline) {
+        int[] lastGeneration = new int[1];
+        boolean settled = waitForStable("ui idle", () -> {
+            lastGeneration[0] = driver.getPageSource().hashCode();
+            return lastGeneration[0];
+        }, deadline);
+        if (settled) {
+            ElementCache.observeGeneration(lastGeneration[0]);
+        }
+        return settled;
+    }
+
+    /**
+     * Wait until the element is present and its bounds stop moving, e.g. after an animation
+     *
+     * @return true if the element was found and stable before the deadline
+     */
+    public boolean waitForElementStable(By locator, Duration deadline) {
+        Duration implicitWait = driver.manage().timeouts().getImplicitWaitTimeout();
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        try {
+            return waitForStable("stable " + locator, () -> {
+                List<WebElement> elements = driver.findElements(locator);
+                return elements.isEmpty() ? null : elements.get(0).getRect();
+            }, deadline);
+        } finally {
+            driver.manage().timeouts().implicitlyWait(implicitWait);
+        }
+    }
+
+    /**
+     * Poll a condition with backoff until it returns a non-null value or the deadline passes
+     *
+     * @return the value produced by the condition, or null on timeout
+     */
+    public <T> T until(String description, Supplier<T> condition, Duration deadline) {
+        long start = System.nanoTime();
+        long end = start + deadline.toNanos();
+        long pollMillis = INITIAL_POLL_MILLIS;
+        while (true) {
+            T value = probe(condition);
+            if (value != null && !Boolean.FALSE.equals(value)) {
+                record(description, start, deadline, true);
+                return value;
+            }
+            if (!sleepUntilNextPoll(pollMillis, end)) {
+                record(description, start, deadline, false);
+                return null;
+            }
+            pollMillis = nextPoll(pollMillis);
+        }
+    }
+
+    /**
+     * Waits recorded on the current thread since the last clear
+     */
+    public static List<WaitRecord> getRecordedWaits() {
+        return Collections.unmodifiableList(new ArrayList<>(records.get()));
+    }
+
+    /**
+     * Forget the waits recorded on the current thread, called at the start of each test
+     */
+    public static void clearRecordedWaits() {
+        records.get().clear();
+    }
+
+    /**
+     * Poll a snapshot until two consecutive non-null snapshots are equal
+     */
+    private boolean waitForStable(String description, Supplier<Object> snapshot, Duration deadline) {
+        long start = System.nanoTime();
+        long end = start + deadline.toNanos();
+        long pollMillis = INITIAL_POLL_MILLIS;
+        Object previous = probe(snapshot);
+        while (true) {
+            if (!sleepUntilNextPoll(pollMillis, end)) {
+                record(description, start, deadline, false);
+                return false;
+            }
+            Object current = probe(snapshot);
+            if (current != null && Objects.equals(previous, current)) {
+                record(description, start, deadline, true);
+                return true;
+            }
+            previous = current;
+            pollMillis = nextPoll(pollMillis);
+        }
+    }
+
+    private static <T> T probe(Supplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            // The screen is still changing underneath us, treat it as not settled yet
+            logger.debug("Wait probe failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sleep for the poll interval, clipped to the deadline
+     *
+     * @return false if the deadline has already passed
+     */
+    private static boolean sleepUntilNextPoll(long pollMillis, long endNanos) {
+        long remainingMillis = Duration.ofNanos(endNanos - System.nanoTime()).toMillis();
+        if (remainingMillis <= 0) {
+            return false;
+        }
+        try {
+            Thread.sleep(Math.min(pollMillis, remainingMillis));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long nextPoll(long pollMillis) {
+        return Math.min(MAX_POLL_MILLIS, (long) (pollMillis * BACKOFF_FACTOR));
+    }
+
+    private static void record(String description, long startNanos, Duration deadline, boolean settled) {
+        long elapsed = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+        records.get().add(new WaitRecord(description, elapsed, deadline.toMillis(), settled));
+        if (settled) {
+            logger.debug("Wait '{}' settled after {} ms", description, elapsed);
+        } else {
+            logger.warn("Wait '{}' did not settle within {} ms", description, deadline.toMillis());
+        }
+    }
+}
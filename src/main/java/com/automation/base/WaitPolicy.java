@@ -0,0 +1,270 @@
+package com.automation.base;
+
+import com.automation.metrics.LatencyHistogram;
+import com.automation.utils.ConfigReader;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Central wait policy for element lookups.
+ * Sessions run with a zero implicit wait, so a lookup is a single probe and all waiting happens
+ * here, once, instead of an implicit wait stacked inside every explicit wait and every fallback
+ * locator. The timeout of a locator adapts to how long it actually took to appear in earlier
+ * lookups, and every wait is charged to the budget of the current test and step; once a budget
+ * is spent, lookups only probe. Time spent waiting for elements that never appeared is reported.
+ */
+public class WaitPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitPolicy.class);
+    private static final long INITIAL_POLL_MILLIS = 50;
+    private static final long MAX_POLL_MILLIS = 500;
+    private static final Map<String, LatencyHistogram> appearances = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Budget> testBudget = new ThreadLocal<>();
+    private static final ThreadLocal<Deque<Budget>> stepBudgets = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final LongAdder suiteWaits = new LongAdder();
+    private static final LongAdder suiteMisses = new LongAdder();
+    private static final LongAdder suiteWastedMillis = new LongAdder();
+
+    /**
+     * Wait time allowed for a test or step, and what it has spent
+     */
+    private static final class Budget {
+        final String name;
+        final long limitMillis;
+        long spentMillis;
+        long wastedMillis;
+        int waits;
+        int misses;
+
+        Budget(String name, long limitMillis) {
+            this.name = name;
+            this.limitMillis = limitMillis;
+        }
+
+        long remainingMillis() {
+            return Math.max(0, limitMillis - spentMillis);
+        }
+    }
+
+    /**
+     * A step with its own wait budget, closed at the end of the step
+     */
+    public static final class Step implements AutoCloseable {
+        private final Budget budget;
+
+        private Step(Budget budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public void close() {
+            stepBudgets.get().remove(budget);
+            if (budget.misses > 0) {
+                logger.info("Step '{}' waited {} ms, {} ms of it for {} elements that never appeared", budget.name, budget.spentMillis, budget.wastedMillis, budget.misses);
+            }
+        }
+    }
+
+    private WaitPolicy() {
+    }
+
+    /**
+     * Start the wait budget of a test on the current thread
+     */
+    public static void startTest(String testName) {
+        testBudget.set(new Budget(testName, Duration.ofSeconds(
+                ConfigReader.getIntProperty("wait.test.budget.seconds", 120)).toMillis()));
+        stepBudgets.get().clear();
+    }
+
+    /**
+     * Give the following waits a budget of their own, e.g. {@code try (var step = WaitPolicy.step("save", ...))}
+     */
+    public static Step step(String name, Duration budget) {
+        Budget step = new Budget(name, budget.toMillis());
+        stepBudgets.get().push(step);
+        return new Step(step);
+    }
+
+    /**
+     * End the test's budget and describe its waits, or null if it did not wait for any element
+     */
+    public static String endTest() {
+        Budget budget = testBudget.get();
+        testBudget.remove();
+        stepBudgets.get().clear();
+        if (budget == null || budget.waits == 0) {
+            return null;
+        }
+        return "Element waits: " + budget.waits + " lookups waited " + budget.spentMillis + " ms, "
+                + budget.wastedMillis + " ms of it for " + budget.misses + " elements that never appeared";
+    }
+
+    /**
+     * Wait for an element, or return null once its timeout or the budget runs out
+     */
+    public static WebElement await(WebDriver driver, By locator) {
+        return awaitAny(driver, locator);
+    }
+
+    /**
+     * Wait for an element, throwing NoSuchElementException if it does not appear
+     */
+    public static WebElement find(WebDriver driver, By locator) {
+        WebElement element = await(driver, locator);
+        if (element == null) {
+            throw new NoSuchElementException("Element did not appear within its wait: " + locator);
+        }
+        return element;
+    }
+
+    /**
+     * Wait for whichever of the alternative locators appears first, probing all of them on every
+     * poll so that the alternatives share one timeout instead of paying one each
+     */
+    public static WebElement awaitAny(WebDriver driver, By... locators) {
+        long timeoutMillis = 0;
+        for (By locator : locators) {
+            timeoutMillis = Math.max(timeoutMillis, timeoutFor(locator));
+        }
+        timeoutMillis = Math.min(timeoutMillis, remainingBudgetMillis());
+
+        long start = System.nanoTime();
+        long pollMillis = INITIAL_POLL_MILLIS;
+        boolean firstPoll = true;
+        while (true) {
+            for (By locator : locators) {
+                WebElement element = probe(driver, locator);
+                if (element != null) {
+                    long elapsed = elapsedMillis(start);
+                    // An element already on screen says nothing about how long it takes to appear,
+                    // counting it would shrink the timeout of the lookups that do have to wait
+                    if (!firstPoll) {
+                        appearances.computeIfAbsent(locator.toString(), key -> new LatencyHistogram())
+                                .record(elapsed * 1_000_000);
+                    }
+                    charge(elapsed, false);
+                    return element;
+                }
+            }
+            long remaining = timeoutMillis - elapsedMillis(start);
+            if (remaining <= 0) {
+                long elapsed = elapsedMillis(start);
+                charge(elapsed, true);
+                logger.debug("No element for {} after {} ms", List.of(locators), elapsed);
+                return null;
+            }
+            try {
+                Thread.sleep(Math.min(pollMillis, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            pollMillis = Math.min(MAX_POLL_MILLIS, pollMillis * 3 / 2);
+            firstPoll = false;
+        }
+    }
+
+    /**
+     * Check once, without waiting, whether an element is there
+     */
+    public static boolean isPresentNow(WebDriver driver, By locator) {
+        return probe(driver, locator) != null;
+    }
+
+    /**
+     * Timeout for a locator: twice its p95 appearance latency once it has been seen appearing
+     * often enough, within the configured bounds, otherwise the full element timeout. Only lookups
+     * that had to wait for the element count as appearances.
+     */
+    public static long timeoutFor(By locator) {
+        long maxMillis = Duration.ofSeconds(ConfigReader.getIntProperty("wait.element.timeout.seconds", 10)).toMillis();
+        LatencyHistogram observed = appearances.get(locator.toString());
+        if (observed == null || observed.getCount() < ConfigReader.getIntProperty("wait.adaptive.min.samples", 3)) {
+            return maxMillis;
+        }
+        long adaptive = (long) (observed.getPercentileMillis(95) * 2);
+        return Math.max(ConfigReader.getIntProperty("wait.element.min.timeout.ms", 1000), Math.min(maxMillis, adaptive));
+    }
+
+    /**
+     * Wait time left in the tightest of the current test and step budgets
+     */
+    public static long remainingBudgetMillis() {
+        long remaining = Long.MAX_VALUE;
+        Budget test = testBudget.get();
+        if (test != null) {
+            remaining = test.remainingMillis();
+        }
+        for (Budget step : stepBudgets.get()) {
+            remaining = Math.min(remaining, step.remainingMillis());
+        }
+        return remaining;
+    }
+
+    /**
+     * A timeout clipped to the remaining budget, for explicit waits that poll on their own
+     */
+    public static Duration clip(Duration timeout) {
+        return Duration.ofMillis(Math.min(timeout.toMillis(), remainingBudgetMillis()));
+    }
+
+    public static String getSuiteSummary() {
+        return "Element waits: " + suiteWaits.sum() + " lookups, " + suiteMisses.sum()
+                + " never appeared, " + suiteWastedMillis.sum() + " ms spent waiting for them";
+    }
+
+    private static WebElement probe(WebDriver driver, By locator) {
+        try {
+            List<WebElement> elements = LocatorCompiler.findElements(driver, locator);
+            return elements.isEmpty() ? null : elements.get(0);
+        } catch (RuntimeException e) {
+            // The screen is changing underneath the lookup, try again on the next poll
+            logger.debug("Probe for {} failed: {}", locator, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void charge(long elapsedMillis, boolean missed) {
+        suiteWaits.increment();
+        if (missed) {
+            suiteMisses.increment();
+            suiteWastedMillis.add(elapsedMillis);
+        }
+        Budget test = testBudget.get();
+        if (test != null) {
+            chargeTo(test, elapsedMillis, missed);
+            if (test.remainingMillis() == 0 && elapsedMillis > 0) {
+                logger.warn("Wait budget of {} is spent, further lookups only probe", test.name);
+            }
+        }
+        for (Budget step : stepBudgets.get()) {
+            chargeTo(step, elapsedMillis, missed);
+        }
+    }
+
+    private static void chargeTo(Budget budget, long elapsedMillis, boolean missed) {
+        budget.spentMillis += elapsedMillis;
+        budget.waits++;
+        if (missed) {
+            budget.misses++;
+            budget.wastedMillis += elapsedMillis;
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,175 @@
+package com.automation.listeners;
+
+import com.automation.utils.ConfigReader;
+import com.automation.utils.TestHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Orders tests so the likeliest failures run first, for an early red signal.
+ * A test's failure probability is estimated from its recent outcomes in the test history and
+ * raised when git shows changes to its test class or to framework and page classes it imports.
+ * Tests then run by failure probability per second of expected duration, which minimizes the
+ * expected time to the first failure. Gate tests listed in order.pinned.first, such as the device
+ * connectivity check, keep running first in their declared order. Enabled with test.order=fail-fast;
+ * without git history to compare against, or without a test history, the declared order is kept.
+ */
+public class FailFastInterceptor implements IMethodInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FailFastInterceptor.class);
+    private static final Pattern IMPORT = Pattern.compile("^import\\s+(com\\.automation\\.[\\w.]+);", Pattern.MULTILINE);
+    /** Failure probability assumed for a test whose code changed */
+    private static final double CHANGED_FAILURE_PROBABILITY = 0.5;
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!"fail-fast".equalsIgnoreCase(ConfigReader.getProperty("test.order", "declared").trim()) || methods.size() < 2) {
+            return methods;
+        }
+        Set<String> pinned = new HashSet<>(List.of(ConfigReader.getProperty("order.pinned.first", "").split("\\s*,\\s*")));
+        TestHistory history = TestHistory.load(TestHistory.defaultPath());
+        Set<String> changedFiles = changedFiles();
+        if (changedFiles == null || history.getEntries().isEmpty()) {
+            // A shallow clone, a tree without git or a first run has nothing to rank tests by
+            logger.debug("No change or test history for '{}', keeping the declared order", context.getName());
+            return methods;
+        }
+
+        List<IMethodInstance> gates = new ArrayList<>();
+        List<IMethodInstance> ordered = new ArrayList<>();
+        Map<IMethodInstance, Double> scores = new HashMap<>();
+        long fallbackMillis = ConfigReader.getIntProperty("shard.default.duration.seconds", 60) * 1000L;
+        for (IMethodInstance method : methods) {
+            String className = method.getMethod().getRealClass().getName();
+            if (pinned.contains(className) || pinned.contains(method.getMethod().getQualifiedName())) {
+                gates.add(method);
+                continue;
+            }
+            String testName = method.getMethod().getQualifiedName();
+            double probability = failureProbability(history.getRecentOutcomes(testName));
+            if (isAffected(className, changedFiles)) {
+                probability = 1 - (1 - probability) * (1 - CHANGED_FAILURE_PROBABILITY);
+            }
+            long millis = history.getMillis(testName);
+            scores.put(method, probability / Math.max(1, millis < 0 ? fallbackMillis : millis));
+            ordered.add(method);
+        }
+        // Stable sort, so equally likely tests keep their declared order
+        ordered.sort(Comparator.comparingDouble((IMethodInstance method) -> scores.get(method)).reversed());
+        gates.addAll(ordered);
+
+        StringBuilder order = new StringBuilder();
+        for (IMethodInstance method : gates) {
+            order.append(order.length() == 0 ? "" : ", ").append(method.getMethod().getMethodName());
+        }
+        logger.info("Fail-fast order of '{}': {}", context.getName(), order);
+        return gates;
+    }
+
+    /**
+     * Recent failure rate, weighted towards the latest runs and smoothed so a test with little
+     * history is neither certain to pass nor to fail
+     */
+    static double failureProbability(String recentOutcomes) {
+        double failures = 0;
+        double runs = 0;
+        double weight = 1;
+        for (int i = recentOutcomes.length() - 1; i >= 0; i--) {
+            runs += weight;
+            if (recentOutcomes.charAt(i) == 'F') {
+                failures += weight;
+            }
+            weight *= 0.8;
+        }
+        return (failures + 0.5) / (runs + 5);
+    }
+
+    /**
+     * Whether the test class, or an imported framework or page class, is among the changed files
+     */
+    private static boolean isAffected(String className, Set<String> changedFiles) {
+        if (changedFiles.isEmpty()) {
+            return false;
+        }
+        String classPath = className.replace('.', '/') + ".java";
+        Set<String> dependencies = new HashSet<>();
+        dependencies.add(classPath);
+        Path source = Paths.get("src/test/java", classPath);
+        if (Files.exists(source)) {
+            try {
+                Matcher imports = IMPORT.matcher(Files.readString(source));
+                while (imports.find()) {
+                    dependencies.add(imports.group(1).replace('.', '/') + ".java");
+                }
+            } catch (IOException e) {
+                logger.debug("Could not read {}: {}", source, e.getMessage());
+            }
+        }
+        for (String file : changedFiles) {
+            for (String dependency : dependencies) {
+                if (file.endsWith(dependency)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Files changed since order.change.base, committed or not, or null if git or the base revision
+     * is unavailable
+     */
+    private static Set<String> changedFiles() {
+        Set<String> files = new HashSet<>();
+        String base = ConfigReader.getProperty("order.change.base", "HEAD~1").trim();
+        try {
+            Process process = new ProcessBuilder("git", "diff", "--name-only", base).redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.endsWith(".java")) {
+                        files.add(line.trim());
+                    }
+                }
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                logger.debug("git diff against {} did not finish", base);
+                return null;
+            }
+            if (process.exitValue() != 0) {
+                logger.debug("git diff against {} failed with exit code {}", base, process.exitValue());
+                return null;
+            }
+        } catch (IOException e) {
+            logger.debug("No change information from git: {}", e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return files;
+    }
+}
@@ -0,0 +1,37 @@
+package com.automation.listeners;
+
+import com.automation.base.DeviceRegistry;
+import com.automation.utils.ConfigReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.IAlterSuiteListener;
+import org.testng.xml.XmlSuite;
+
+import java.util.List;
+
+/**
+ * Fans the suite out over the registered devices, one TestNG thread per device.
+ * Test classes run in parallel with each other while the methods of a class stay on one
+ * thread, so the per-instance driver field of BaseTest is never shared between threads.
+ */
+public class ParallelExecutionListener implements IAlterSuiteListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ParallelExecutionListener.class);
+    
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        if (!ConfigReader.getBooleanProperty("parallel.enabled")) {
+            return;
+        }
+        int deviceCount = DeviceRegistry.getDevices().size();
+        if (deviceCount < 2) {
+            logger.info("Single device registered, keeping serial execution");
+            return;
+        }
+        for (XmlSuite suite : suites) {
+            suite.setParallel(XmlSuite.ParallelMode.CLASSES);
+            suite.setThreadCount(deviceCount);
+            logger.info("Suite '{}' runs classes in parallel on {} devices", suite.getName(), deviceCount);
+        }
+    }
+}
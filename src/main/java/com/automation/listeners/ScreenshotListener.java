@@ -0,0 +1,75 @@
+package com.automation.listeners;
+
+import com.automation.base.DriverManager;
+import com.automation.utils.ConfigReader;
+import com.automation.utils.ExtentReportManager;
+import com.automation.utils.ScreenshotUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes the closing screenshot of each test according to screenshot.on.failure and
+ * screenshot.on.pass. It runs right after the test method, on the test's thread, so the
+ * session is still open: @AfterMethod, which quits it, only comes afterwards. onTestFailure
+ * also runs before @AfterMethod, but after the retry analyzer has decided, so a retried
+ * attempt would never get its screenshot there. A failed test also gets the frames kept in
+ * its screenshot ring buffer written out; a passed test's buffer is dropped unwritten.
+ */
+public class ScreenshotListener implements IInvokedMethodListener, ITestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenshotListener.class);
+    private final AtomicInteger captured = new AtomicInteger();
+    private final AtomicInteger missed = new AtomicInteger();
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+        if (!method.isTestMethod()) {
+            return;
+        }
+        boolean failed = result.getStatus() == ITestResult.FAILURE;
+        boolean wanted = failed ? ConfigReader.getBooleanProperty("screenshot.on.failure")
+                : result.getStatus() == ITestResult.SUCCESS && ConfigReader.getBooleanProperty("screenshot.on.pass");
+        String testName = result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName();
+        if (!wanted || !DriverManager.isDriverInitialized()) {
+            ScreenshotUtils.discardBufferedFrames();
+            if (wanted && failed) {
+                missed.incrementAndGet();
+                logger.warn("No session left to take the failure screenshot of {}", testName);
+            }
+            return;
+        }
+        try {
+            if (failed) {
+                for (ScreenshotUtils.Screenshot frame : ScreenshotUtils.persistBufferedFrames()) {
+                    ExtentReportManager.addScreenshot(frame.path(), frame.thumbnailPath());
+                }
+                ScreenshotUtils.takeFailureScreenshot(testName);
+                captured.incrementAndGet();
+            } else {
+                ScreenshotUtils.discardBufferedFrames();
+                ScreenshotUtils.takePassScreenshot(testName);
+            }
+        } catch (Exception e) {
+            // The failure may have taken the session down with it
+            if (failed) {
+                missed.incrementAndGet();
+            }
+            logger.warn("Could not take the closing screenshot of {}: {}", testName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFinish(ITestContext context) {
+        if (captured.get() > 0 || missed.get() > 0) {
+            logger.info("Failure screenshots of '{}': {} taken, {} failures without one",
+                    context.getName(), captured.get(), missed.get());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.automation.listeners;
+
+import com.automation.utils.ConfigReader;
+import com.automation.utils.TestHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Runs one shard of the suite, for splitting a run across machines with -Dshard.count=N and
+ * -Dshard.index=0..N-1. Test methods are assigned to shards longest first, each to the shard
+ * with the least expected time so far, using durations from the test history; tests
+ * without history count as the median known duration. Every shard computes the same plan from
+ * the same suite and history file, so shards need no coordination. Methods with dependencies
+ * are not passed to interceptors by TestNG and run on every shard, as do the gate tests of
+ * order.pinned.first.
+ */
+public class ShardInterceptor implements IMethodInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardInterceptor.class);
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        int shardCount = ConfigReader.getIntProperty("shard.count", 1);
+        int shardIndex = ConfigReader.getIntProperty("shard.index", 0);
+        if (shardCount <= 1 || methods.isEmpty()) {
+            return methods;
+        }
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("shard.index must be within 0.." + (shardCount - 1) + ", was " + shardIndex);
+        }
+
+        Map<String, Long> durations = new LinkedHashMap<>();
+        TestHistory history = TestHistory.load(TestHistory.defaultPath());
+        Set<String> gates = new HashSet<>(List.of(ConfigReader.getProperty("order.pinned.first", "").split("\\s*,\\s*")));
+        for (IMethodInstance method : methods) {
+            String testName = method.getMethod().getQualifiedName();
+            if (!isGate(method, gates)) {
+                durations.put(testName, history.getMillis(testName));
+            }
+        }
+        long fallback = medianKnown(durations.values());
+        durations.replaceAll((testName, millis) -> millis < 0 ? fallback : millis);
+
+        Map<String, Integer> plan = plan(durations, shardCount);
+        long[] loads = new long[shardCount];
+        plan.forEach((testName, shard) -> loads[shard] += durations.get(testName));
+
+        List<IMethodInstance> shard = new ArrayList<>();
+        for (IMethodInstance method : methods) {
+            if (isGate(method, gates) || plan.get(method.getMethod().getQualifiedName()) == shardIndex) {
+                shard.add(method);
+            }
+        }
+        logger.info("Shard {} of {} in '{}' runs {} of {} tests, ~{} s expected; all shards: {} s", shardIndex, shardCount, context.getName(), shard.size(), methods.size(), loads[shardIndex] / 1000, Arrays.toString(Arrays.stream(loads).map(l -> l / 1000).toArray()));
+        return shard;
+    }
+
+    /**
+     * Gate tests from order.pinned.first, such as the device connectivity check, run on every shard
+     */
+    private static boolean isGate(IMethodInstance method, Set<String> gates) {
+        return gates.contains(method.getMethod().getRealClass().getName())
+                || gates.contains(method.getMethod().getQualifiedName());
+    }
+
+    /**
+     * Longest processing time first: each test, longest first, goes to the least loaded shard.
+     * Ties are broken by name and shard number so every machine computes the same plan.
+     */
+    static Map<String, Integer> plan(Map<String, Long> durations, int shardCount) {
+        List<Map.Entry<String, Long>> tests = new ArrayList<>(durations.entrySet());
+        tests.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        PriorityQueue<long[]> shards = new PriorityQueue<>(
+                Comparator.<long[]>comparingLong(s -> s[0]).thenComparingLong(s -> s[1]));
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new long[] {0, i});
+        }
+        Map<String, Integer> plan = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> test : tests) {
+            long[] least = shards.poll();
+            plan.put(test.getKey(), (int) least[1]);
+            least[0] += test.getValue();
+            shards.add(least);
+        }
+        return plan;
+    }
+
+    private static long medianKnown(Iterable<Long> durations) {
+        List<Long> known = new ArrayList<>();
+        for (long millis : durations) {
+            if (millis >= 0) {
+                known.add(millis);
+            }
+        }
+        if (known.isEmpty()) {
+            return ConfigReader.getIntProperty("shard.default.duration.seconds", 60) * 1000L;
+        }
+        known.sort(null);
+        return known.get(known.size() / 2);
+    }
+}
@@ -0,0 +1,43 @@
+package com.automation.listeners;
+
+import com.automation.utils.ConfigReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.SkipException;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Skips the rest of the suite after the first test failure when order.stop.after.first.failure
+ * is set, for CI jobs that only need the first red signal. Skipping starts at the next test's
+ * @BeforeMethod, so no session is started for tests that will not run. Only a final failure
+ * counts: an attempt the StepRetryAnalyzer retries reaches TestNG's listeners as skipped, but
+ * only after afterInvocation, so the decision waits for onTestFailure.
+ */
+public class StopOnFailureListener implements IInvokedMethodListener, ITestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StopOnFailureListener.class);
+    private static final AtomicReference<String> firstFailure = new AtomicReference<>();
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult result) {
+        String failed = firstFailure.get();
+        ITestNGMethod testMethod = method.getTestMethod();
+        if (failed != null && (method.isTestMethod() || testMethod.isBeforeMethodConfiguration())) {
+            throw new SkipException("Skipped after the first failure, in " + failed);
+        }
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        if (ConfigReader.getBooleanProperty("order.stop.after.first.failure")
+                && firstFailure.compareAndSet(null, result.getMethod().getQualifiedName())) {
+            logger.warn("First failure in {}, skipping the remaining tests", firstFailure.get());
+        }
+    }
+}
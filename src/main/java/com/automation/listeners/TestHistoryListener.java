@@ -0,0 +1,78 @@
+package com.automation.listeners;
+
+import com.automation.utils.TestHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how long each test method takes, including its @BeforeMethod and @AfterMethod work
+ * (session start or app reset, teardown), and whether it passed, and adds the run to the test
+ * history when the suite finishes. The ShardInterceptor and FailFastInterceptor plan with it.
+ * Outcomes come from onTestSuccess and onTestFailure, which only see an attempt's final result:
+ * a failed attempt that is retried arrives there as skipped and does not count as a failure.
+ */
+public class TestHistoryListener implements IInvokedMethodListener, ITestListener, ISuiteListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestHistoryListener.class);
+    private static final Map<String, Long> runDurations = new ConcurrentHashMap<>();
+    private static final Map<String, Boolean> runOutcomes = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Long> pendingSetupMillis = ThreadLocal.withInitial(() -> 0L);
+    private static final ThreadLocal<String> lastTest = new ThreadLocal<>();
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+        long millis = Math.max(0, result.getEndMillis() - result.getStartMillis());
+        ITestNGMethod testMethod = method.getTestMethod();
+        if (method.isTestMethod()) {
+            String testName = testMethod.getQualifiedName();
+            // Invocations of data driven tests add up, the method is scheduled as a whole
+            runDurations.merge(testName, millis + pendingSetupMillis.get(), Long::sum);
+            pendingSetupMillis.set(0L);
+            lastTest.set(testName);
+        } else if (testMethod.isBeforeMethodConfiguration()) {
+            pendingSetupMillis.set(pendingSetupMillis.get() + millis);
+        } else if (testMethod.isAfterMethodConfiguration() && lastTest.get() != null) {
+            runDurations.merge(lastTest.get(), millis, Long::sum);
+        }
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        runOutcomes.merge(result.getMethod().getQualifiedName(), true, Boolean::logicalAnd);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        runOutcomes.merge(result.getMethod().getQualifiedName(), false, Boolean::logicalAnd);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        if (runDurations.isEmpty()) {
+            return;
+        }
+        Path file = TestHistory.defaultPath();
+        TestHistory history = TestHistory.load(file);
+        history.record(runDurations, runOutcomes);
+        try {
+            history.save(file);
+            logger.info("Results of {} tests added to {}", runDurations.size(), file);
+        } catch (IOException e) {
+            logger.error("Failed to write test history {}: {}", file, e.getMessage());
+        }
+        runDurations.clear();
+        runOutcomes.clear();
+    }
+}
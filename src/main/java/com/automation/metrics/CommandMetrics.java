@@ -0,0 +1,179 @@
+package com.automation.metrics;
+
+import com.automation.utils.ConfigReader;
+import com.automation.utils.ExtentReportManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Per-command latency metrics, kept per test, per test class and for the whole suite.
+ * Commands are labelled by name, with the locator strategy for element lookups and the script
+ * for mobile: extension commands, e.g. {@code findElement[id]} or {@code executeScript[mobile: shell]}.
+ * Enabled with metrics.enabled; exported to test-output/metrics and summarized in the report.
+ */
+public class CommandMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandMetrics.class);
+    private static final String METRICS_DIR = "test-output/metrics";
+    private static final Map<String, LatencyHistogram> suite = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, LatencyHistogram>> classes = new ConcurrentHashMap<>();
+    private static final ThreadLocal<TestContext> currentTest = new ThreadLocal<>();
+    private static final ConcurrentLinkedQueue<Summary> testSummaries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Percentiles of one command in one scope (suite, class or test), in milliseconds
+     */
+    public record Summary(String scope, String name, String command, long count,
+                          double meanMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+
+        static Summary of(String scope, String name, String command, LatencyHistogram histogram) {
+            return new Summary(scope, name, command, histogram.getCount(), round(histogram.getMeanMillis()),
+                    histogram.getPercentileMillis(50), histogram.getPercentileMillis(95),
+                    histogram.getPercentileMillis(99), histogram.getMaxMillis());
+        }
+    }
+
+    private record TestContext(String className, String testName, Map<String, LatencyHistogram> commands) {
+    }
+
+    private CommandMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ConfigReader.getBooleanProperty("metrics.enabled");
+    }
+
+    /**
+     * Attribute commands on the current thread to a test until endTest
+     */
+    public static void startTest(String className, String testName) {
+        currentTest.set(new TestContext(className, testName, new TreeMap<>()));
+    }
+
+    /**
+     * Record the latency of one command
+     */
+    public static void record(String command, long nanos) {
+        suite.computeIfAbsent(command, key -> new LatencyHistogram()).record(nanos);
+        TestContext test = currentTest.get();
+        if (test != null) {
+            classes.computeIfAbsent(test.className(), key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(command, key -> new LatencyHistogram()).record(nanos);
+            test.commands().computeIfAbsent(command, key -> new LatencyHistogram()).record(nanos);
+        }
+    }
+
+    /**
+     * Close the current test, add its command summary to its report entry and return it
+     */
+    public static List<Summary> endTest() {
+        TestContext test = currentTest.get();
+        currentTest.remove();
+        List<Summary> summaries = new ArrayList<>();
+        if (test == null || test.commands().isEmpty()) {
+            return summaries;
+        }
+        test.commands().forEach((command, histogram) ->
+                summaries.add(Summary.of("test", test.testName(), command, histogram)));
+        testSummaries.addAll(summaries);
+        ExtentReportManager.logInfo(toHtmlTable(summaries));
+        return summaries;
+    }
+
+    /**
+     * Suite-wide summary, slowest total time first
+     */
+    public static List<Summary> getSuiteSummary() {
+        List<Summary> summaries = new ArrayList<>();
+        suite.forEach((command, histogram) -> summaries.add(Summary.of("suite", "suite", command, histogram)));
+        summaries.sort(Comparator.comparingDouble((Summary s) -> s.count() * s.meanMillis()).reversed());
+        return summaries;
+    }
+
+    /**
+     * Write all scopes to CSV and JSON and add the suite summary to the report, called at the end of the suite
+     */
+    public static void export() {
+        if (suite.isEmpty()) {
+            return;
+        }
+        List<Summary> all = new ArrayList<>(getSuiteSummary());
+        new TreeMap<>(classes).forEach((className, commands) -> new TreeMap<>(commands).forEach((command, histogram) ->
+                all.add(Summary.of("class", className, command, histogram))));
+        List<Summary> tests = new ArrayList<>(testSummaries);
+        tests.sort(Comparator.comparing(Summary::name).thenComparing(Summary::command));
+        all.addAll(tests);
+
+        try {
+            Path dir = Paths.get(METRICS_DIR);
+            Files.createDirectories(dir);
+            writeCsv(dir.resolve("command-latency.csv"), all);
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(dir.resolve("command-latency.json").toFile(), all);
+            logger.info("Command latency metrics written to {}", dir.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to write command latency metrics: {}", e.getMessage());
+        }
+        ExtentReportManager.addSummary("Command Latency Summary", toHtmlTable(getSuiteSummary()));
+    }
+
+    private static void writeCsv(Path file, List<Summary> summaries) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("scope,name,command,count,mean_ms,p50_ms,p95_ms,p99_ms,max_ms");
+            writer.newLine();
+            for (Summary s : summaries) {
+                writer.write(String.join(",", s.scope(), csv(s.name()), csv(s.command()), String.valueOf(s.count()),
+                        format(s.meanMillis()), format(s.p50Millis()), format(s.p95Millis()),
+                        format(s.p99Millis()), format(s.maxMillis())));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String toHtmlTable(List<Summary> summaries) {
+        StringBuilder html = new StringBuilder("<table class='table table-sm'><tr><th>Command</th><th>Count</th>"
+                + "<th>Mean ms</th><th>p50</th><th>p95</th><th>p99</th><th>Max</th></tr>");
+        for (Summary s : summaries) {
+            html.append("<tr><td>").append(escape(s.command())).append("</td><td>").append(s.count())
+                    .append("</td><td>").append(format(s.meanMillis()))
+                    .append("</td><td>").append(format(s.p50Millis()))
+                    .append("</td><td>").append(format(s.p95Millis()))
+                    .append("</td><td>").append(format(s.p99Millis()))
+                    .append("</td><td>").append(format(s.maxMillis())).append("</td></tr>");
+        }
+        return html.append("</table>").toString();
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.1f", millis);
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 10) / 10.0;
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,100 @@
+package com.automation.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-bucketed latency histogram in microseconds.
+ * Every power of two is split into four buckets, so a percentile is reported within 25% of the
+ * true value while the histogram stays a fixed array of 140 counters. Recording is a few atomic
+ * increments, cheap next to the HTTP round trip of an Appium command. Max is exact.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = SUB_BUCKETS + 34 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * Add all samples of another histogram
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = other.counts.get(i);
+            if (bucketCount > 0) {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        count.add(other.count.sum());
+        totalMicros.add(other.totalMicros.sum());
+        maxMicros.accumulate(other.maxMicros.get());
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : totalMicros.sum() / 1000.0 / samples;
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, capped at the exact max; p0 is the
+     * bucket of the smallest sample
+     */
+    public double getPercentileMillis(double percentile) {
+        long samples = count.sum();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * samples));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + sub);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            // The last bucket also holds everything beyond its range, only the max bounds it
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+}
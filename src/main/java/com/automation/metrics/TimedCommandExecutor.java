@@ -0,0 +1,60 @@
+package com.automation.metrics;
+
+import io.appium.java_client.MobileCommand;
+import io.appium.java_client.remote.AppiumCommandExecutor;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.http.HttpClient;
+
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Appium command executor that times every command it sends, including session creation.
+ * Handed to the AndroidDriver constructor, so tests keep a plain AndroidDriver.
+ */
+public class TimedCommandExecutor extends AppiumCommandExecutor {
+
+    public TimedCommandExecutor(URL serverUrl) {
+        super(MobileCommand.commandRepository, serverUrl);
+    }
+
+    /**
+     * Send commands through the given HTTP client factory, such as the shared AppiumTransport
+     */
+    public TimedCommandExecutor(URL serverUrl, HttpClient.Factory httpClientFactory) {
+        super(MobileCommand.commandRepository, serverUrl, httpClientFactory);
+    }
+
+    @Override
+    public Response execute(Command command) {
+        long start = System.nanoTime();
+        try {
+            return super.execute(command);
+        } finally {
+            CommandMetrics.record(labelOf(command), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Command name, qualified by locator strategy or mobile: script where that tells commands apart
+     */
+    static String labelOf(Command command) {
+        String name = command.getName();
+        Map<String, ?> parameters = command.getParameters();
+        switch (name) {
+            case DriverCommand.FIND_ELEMENT:
+            case DriverCommand.FIND_ELEMENTS:
+            case DriverCommand.FIND_CHILD_ELEMENT:
+            case DriverCommand.FIND_CHILD_ELEMENTS:
+                return name + "[" + parameters.get("using") + "]";
+            case DriverCommand.EXECUTE_SCRIPT:
+                Object script = parameters.get("script");
+                return script instanceof String && ((String) script).startsWith("mobile:")
+                        ? name + "[" + script + "]" : name;
+            default:
+                return name;
+        }
+    }
+}
@@ -3,12 +3,15 @@ package com.automation.pages;
 import com.automation.base.BasePage;
 import io.appium.java_client.AppiumBy;
 import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Page Object Model for Android Contacts App
  * Handles all contact-related operations like creating, editing, and viewing contacts
@@ -19,32 +22,35 @@ public class ContactsPage extends BasePage {
     // Constructor
     public ContactsPage(AndroidDriver driver) {
         super();
-        PageFactory.initElements(driver, this);
         logger.info("ContactsPage initialized");
     }
     
+    // Contact form field locators, shared by the single-field methods and the batched form fill
+    private static final String FIRST_NAME_XPATH = "//android.widget.EditText[@text='First name']";
+    private static final String LAST_NAME_XPATH = "//android.widget.EditText[@text='Last name']";
+    private static final String PHONE_XPATH = "//android.widget.EditText[@text='Phone']";
+    private static final String EMAIL_XPATH = "//android.widget.EditText[@text='Email']";
+    private static final String CONTACTS_TITLE_XPATH = "//android.widget.TextView[@text='Contacts']";
+    
     // Elements using different locator strategies
     @FindBy(id = "com.google.android.contacts:id/floating_action_button")
     private WebElement addContactButton;
     
-    @FindBy(xpath = "//android.widget.EditText[@text='First name']")
+    @FindBy(xpath = FIRST_NAME_XPATH)
     private WebElement firstNameField;
     
-    @FindBy(xpath = "//android.widget.EditText[@text='Last name']")
+    @FindBy(xpath = LAST_NAME_XPATH)
     private WebElement lastNameField;
     
-    @FindBy(xpath = "//android.widget.EditText[@text='Phone']")
+    @FindBy(xpath = PHONE_XPATH)
     private WebElement phoneField;
     
-    @FindBy(xpath = "//android.widget.EditText[@text='Email']")
+    @FindBy(xpath = EMAIL_XPATH)
     private WebElement emailField;
     
     @FindBy(xpath = "//androidx.compose.ui.platform.ComposeView/android.view.View/android.view.View/android.view.View[2]/android.view.View[2]/android.widget.Button")
     private WebElement saveButton;
     
-    @FindBy(xpath = "//android.widget.TextView[@text='Contacts']")
-    private WebElement contactsTitle;
-    
     /**
      * Click the add contact button to create a new contact
      */
@@ -57,7 +63,7 @@ public class ContactsPage extends BasePage {
      * Enter first name in the contact form
      */
     public void enterFirstName(String firstName) {
-        logger.info("Entering first name: " + firstName);
+        logger.info("Entering first name: {}", firstName);
         sendKeys(firstNameField, firstName);
     }
     
@@ -65,7 +71,7 @@ public class ContactsPage extends BasePage {
      * Enter last name in the contact form
      */
     public void enterLastName(String lastName) {
-        logger.info("Entering last name: " + lastName);
+        logger.info("Entering last name: {}", lastName);
         sendKeys(lastNameField, lastName);
     }
     
@@ -73,7 +79,7 @@ public class ContactsPage extends BasePage {
      * Enter phone number in the contact form
      */
     public void enterPhoneNumber(String phoneNumber) {
-        logger.info("Entering phone number: " + phoneNumber);
+        logger.info("Entering phone number: {}", phoneNumber);
         sendKeys(phoneField, phoneNumber);
     }
     
@@ -81,7 +87,7 @@ public class ContactsPage extends BasePage {
      * Enter email address in the contact form
      */
     public void enterEmail(String email) {
-        logger.info("Entering email: " + email);
+        logger.info("Entering email: {}", email);
         sendKeys(emailField, email);
     }
     
@@ -99,12 +105,14 @@ public class ContactsPage extends BasePage {
     public boolean isContactsPageDisplayed() {
         logger.info("Checking if contacts page is displayed");
         try {
-            boolean isDisplayed = isElementPresent(contactsTitle) || 
-                                findElementSafely(AppiumBy.xpath("//android.widget.TextView[contains(@text,'Contact')]")) != null;
-            logger.info("Contacts page displayed: " + isDisplayed);
+            boolean isDisplayed = snapshotMode
+                    ? isPresent("//android.widget.TextView[@text='Contacts' or contains(@text,'Contact')]")
+                    : findFirst(AppiumBy.xpath(CONTACTS_TITLE_XPATH),
+                            AppiumBy.xpath("//android.widget.TextView[contains(@text,'Contact')]")) != null;
+            logger.info("Contacts page displayed: {}", isDisplayed);
             return isDisplayed;
         } catch (Exception e) {
-            logger.error("Error checking contacts page: " + e.getMessage());
+            logger.error("Error checking contacts page: {}", e.getMessage());
             return false;
         }
     }
@@ -113,18 +121,21 @@ public class ContactsPage extends BasePage {
      * Create a complete contact with all details
      */
     public void createContact(String firstName, String lastName, String phoneNumber, String email) {
-        logger.info("Creating new contact: " + firstName + " " + lastName);
+        logger.info("Creating new contact: {} {}", firstName, lastName);
         
         clickAddContact();
-        waitForElementToBeClickable(2); // Wait for form to load
+        waitForElementToBeClickable(5); // Wait for form to load
         
-        enterFirstName(firstName);
-        enterLastName(lastName);
-        // enterPhoneNumber(phoneNumber);
-        // enterEmail(email);
+        // All fields in one pass: a page source snapshot plus one lookup and one value replace per field
+        Map<By, String> fields = new LinkedHashMap<>();
+        fields.put(AppiumBy.xpath(FIRST_NAME_XPATH), firstName);
+        fields.put(AppiumBy.xpath(LAST_NAME_XPATH), lastName);
+        // fields.put(AppiumBy.xpath(PHONE_XPATH), phoneNumber);
+        // fields.put(AppiumBy.xpath(EMAIL_XPATH), email);
+        fillForm(fields);
         
         saveContact();
-        waitForElementToBeClickable(2); // Wait for save to complete
+        waitForElementToBeClickable(5); // Wait for save to complete
         
         logger.info("Contact creation completed");
     }
@@ -133,14 +144,15 @@ public class ContactsPage extends BasePage {
      * Search for a contact by name
      */
     public boolean searchContact(String contactName) {
-        logger.info("Searching for contact: " + contactName);
+        logger.info("Searching for contact: {}", contactName);
         try {
-            // Look for search functionality
-            WebElement searchIcon = findElementSafely(AppiumBy.xpath("//android.widget.ImageView[@content-desc='Search']"));
+            // Look for search functionality, the icon is an ImageView or an ImageButton depending on the app version
+            WebElement searchIcon = findFirst(AppiumBy.xpath("//android.widget.ImageView[@content-desc='Search']"),
+                    AppiumBy.xpath("//android.widget.ImageButton[@content-desc='Search']"));
             if (searchIcon != null) {
                 click(searchIcon);
                 
-                WebElement searchField = findElementSafely(AppiumBy.xpath("//android.widget.EditText"));
+                WebElement searchField = findForInteraction("//android.widget.EditText");
                 if (searchField != null) {
                     sendKeys(searchField, contactName);
                     return true;
@@ -148,7 +160,7 @@ public class ContactsPage extends BasePage {
             }
             return false;
         } catch (Exception e) {
-            logger.error("Error searching for contact: " + e.getMessage());
+            logger.error("Error searching for contact: {}", e.getMessage());
             return false;
         }
     }
@@ -157,14 +169,13 @@ public class ContactsPage extends BasePage {
      * Verify a contact exists in the list
      */
     public boolean isContactDisplayed(String contactName) {
-        logger.info("Checking if contact is displayed: " + contactName);
+        logger.info("Checking if contact is displayed: {}", contactName);
         try {
-            WebElement contact = findElementSafely(AppiumBy.xpath("//android.widget.TextView[contains(@text,'" + contactName + "')]"));
-            boolean isDisplayed = contact != null;
-            logger.info("Contact " + contactName + " displayed: " + isDisplayed);
+            boolean isDisplayed = isPresent("//android.widget.TextView[contains(@text,'" + contactName + "')]");
+            logger.info("Contact {} displayed: {}", contactName, isDisplayed);
             return isDisplayed;
         } catch (Exception e) {
-            logger.error("Error checking if contact is displayed: " + e.getMessage());
+            logger.error("Error checking if contact is displayed: {}", e.getMessage());
             return false;
         }
     }
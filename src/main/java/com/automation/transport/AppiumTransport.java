@@ -0,0 +1,297 @@
+package com.automation.transport;
+
+import com.automation.metrics.CommandMetrics;
+import com.automation.utils.ConfigReader;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shared HTTP transport for Appium sessions, handed to every session's command executor.
+ * Sessions to the same Appium server share its kept-alive connections in two bounded lanes:
+ * commands that move a lot of data or keep the device busy (screenshots, page source, file
+ * transfers, session creation) use the slow lane with longer read timeouts, so they never hold
+ * a connection a tap is waiting for. Session creation gets permits of its own on the slow
+ * connections, so a device starting a session never queues behind, or starves, the transfers of
+ * running sessions. The connection limits apply per server, whatever number of sessions it runs;
+ * with one server per device they are the limits of one session. A server's connections are
+ * counted by the sessions using them and closed once they have been idle for http.keep.alive.seconds.
+ * Connection reuse goes to getStatsSummary(), per-lane latency to CommandMetrics.
+ */
+public class AppiumTransport implements HttpClient.Factory {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppiumTransport.class);
+    private static volatile AppiumTransport shared;
+
+    private final EventLoopGroup eventLoops = new NioEventLoopGroup(0, new DefaultThreadFactory("appium-transport", true));
+    private final Timer timer = new HashedWheelTimer(new DefaultThreadFactory("appium-transport-timer", true));
+    private final Map<String, Server> servers = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, Duration> readTimeouts = new HashMap<>();
+    private final List<String> slowCommands = new ArrayList<>();
+    private final int connectTimeoutMillis;
+    private final int acquireTimeoutMillis;
+    private final int keepAliveMillis;
+    private final int maxConnections;
+    private final int maxSlowConnections;
+    private final int maxSessionConnections;
+    final LongAdder requests = new LongAdder();
+    final LongAdder newConnections = new LongAdder();
+    final LongAdder reusedConnections = new LongAdder();
+
+    /**
+     * Which connections and read timeout a command gets
+     */
+    public enum Lane {
+        FAST, SLOW, SESSION
+    }
+
+    /**
+     * Connections to one Appium server, shared by its sessions
+     */
+    static final class Server {
+        final String address;
+        final AsyncHttpClient fast;
+        final AsyncHttpClient slow;
+        final Semaphore fastPermits;
+        final Semaphore slowPermits;
+        final Semaphore sessionPermits;
+        int sessions;
+        long idleSince;
+
+        private Server(String address, AsyncHttpClient fast, int fastConnections,
+                       AsyncHttpClient slow, int slowConnections, int sessionConnections) {
+            this.address = address;
+            this.fast = fast;
+            this.slow = slow;
+            this.fastPermits = new Semaphore(fastConnections, true);
+            this.slowPermits = new Semaphore(slowConnections, true);
+            this.sessionPermits = new Semaphore(sessionConnections, true);
+        }
+
+        AsyncHttpClient client(Lane lane) {
+            return lane == Lane.FAST ? fast : slow;
+        }
+
+        /**
+         * Requests in flight per lane are bounded here, since a client waiting for a connection
+         * under its own per-host limit would not notice a kept-alive one coming back
+         */
+        Semaphore permits(Lane lane) {
+            return switch (lane) {
+                case FAST -> fastPermits;
+                case SLOW -> slowPermits;
+                case SESSION -> sessionPermits;
+            };
+        }
+    }
+
+    private AppiumTransport() {
+        connectTimeoutMillis = ConfigReader.getIntProperty("http.connect.timeout.ms", 5000);
+        acquireTimeoutMillis = ConfigReader.getIntProperty("http.pool.acquire.timeout.ms", 0);
+        keepAliveMillis = ConfigReader.getIntProperty("http.keep.alive.seconds", 60) * 1000;
+        maxConnections = ConfigReader.getIntProperty("http.pool.max.connections", 8);
+        maxSlowConnections = ConfigReader.getIntProperty("http.slow.pool.max.connections", 4);
+        maxSessionConnections = ConfigReader.getIntProperty("http.session.pool.max.connections", 2);
+        readTimeouts.put(Lane.FAST, Duration.ofSeconds(ConfigReader.getIntProperty("http.read.timeout.seconds", 60)));
+        readTimeouts.put(Lane.SLOW, Duration.ofSeconds(ConfigReader.getIntProperty("http.slow.read.timeout.seconds", 180)));
+        readTimeouts.put(Lane.SESSION, Duration.ofSeconds(ConfigReader.getIntProperty("http.session.read.timeout.seconds", 600)));
+        for (String command : ConfigReader.getProperty("http.slow.commands", "").split(",")) {
+            if (!command.trim().isEmpty()) {
+                slowCommands.add(command.trim());
+            }
+        }
+    }
+
+    /**
+     * Whether sessions use the shared transport rather than Selenium's default HTTP client
+     */
+    public static boolean isEnabled() {
+        return ConfigReader.getBooleanProperty("http.shared.transport");
+    }
+
+    /**
+     * The transport shared by all sessions of this JVM
+     */
+    public static AppiumTransport shared() {
+        if (shared == null) {
+            synchronized (AppiumTransport.class) {
+                if (shared == null) {
+                    shared = new AppiumTransport();
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * A client for one session; closing it releases the session's hold on the server's connections
+     */
+    @Override
+    public HttpClient createClient(ClientConfig config) {
+        URI base = config.baseUri();
+        String address = base.getScheme() + "://" + base.getAuthority();
+        lock.lock();
+        try {
+            Server server = servers.computeIfAbsent(address, key -> {
+                logger.info("Opening HTTP transport to {} with up to {} + {} + {} connections", key,
+                        maxConnections, maxSlowConnections, maxSessionConnections);
+                return new Server(key, newClient(), maxConnections, newClient(), maxSlowConnections, maxSessionConnections);
+            });
+            server.sessions++;
+            return new PooledHttpClient(this, server, config);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the connections of servers no session has used for http.keep.alive.seconds,
+     * called by Selenium whenever a session quits
+     */
+    @Override
+    public void cleanupIdleClients() {
+        closeServers(Duration.ofMillis(keepAliveMillis));
+    }
+
+    /**
+     * Close the connections of every server without sessions, called at the end of the suite
+     */
+    public static void shutdown() {
+        if (shared != null) {
+            shared.closeServers(Duration.ZERO);
+        }
+    }
+
+    /**
+     * Requests, connections and how often a request found a kept-alive connection
+     */
+    public static String getStatsSummary() {
+        if (shared == null) {
+            return "HTTP transport: not used";
+        }
+        long reused = shared.reusedConnections.sum();
+        long opened = shared.newConnections.sum();
+        long total = reused + opened;
+        return "HTTP transport: " + shared.requests.sum() + " requests, " + opened + " connections opened, "
+                + (total == 0 ? 0 : Math.round(reused * 1000.0 / total) / 10.0) + "% of requests on a kept-alive connection";
+    }
+
+    /**
+     * The lane of a request: session creation, a configured slow command, or everything else
+     */
+    Lane laneOf(HttpRequest request) {
+        String path = request.getUri();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (request.getMethod() == HttpMethod.POST && path.endsWith("/session")) {
+            return Lane.SESSION;
+        }
+        for (String command : slowCommands) {
+            if (path.endsWith(command)) {
+                return Lane.SLOW;
+            }
+        }
+        return Lane.FAST;
+    }
+
+    Duration readTimeout(Lane lane) {
+        return readTimeouts.get(lane);
+    }
+
+    /**
+     * How long a request waits for a free connection in its lane: http.pool.acquire.timeout.ms,
+     * or when that is 0 the lane's read timeout, since a busy lane frees up as its requests complete
+     */
+    Duration acquireTimeout(Lane lane) {
+        return acquireTimeoutMillis > 0 ? Duration.ofMillis(acquireTimeoutMillis) : readTimeout(lane);
+    }
+
+    void recordRequest(Lane lane, long nanos) {
+        requests.increment();
+        if (CommandMetrics.isEnabled()) {
+            CommandMetrics.record("transport[" + lane.name().toLowerCase(Locale.ROOT) + "]", nanos);
+        }
+    }
+
+    /**
+     * A session quit, its server's connections stay open for the next session
+     */
+    void release(Server server) {
+        lock.lock();
+        try {
+            if (--server.sessions == 0) {
+                server.idleSince = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeServers(Duration minIdle) {
+        List<Server> idle = new ArrayList<>();
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            for (Iterator<Server> it = servers.values().iterator(); it.hasNext(); ) {
+                Server server = it.next();
+                if (server.sessions == 0 && now - server.idleSince >= minIdle.toNanos()) {
+                    it.remove();
+                    idle.add(server);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Server server : idle) {
+            try {
+                server.fast.close();
+                server.slow.close();
+                logger.info("Closed HTTP transport to {}", server.address);
+            } catch (IOException e) {
+                logger.warn("Failed to close HTTP transport to {}: {}", server.address, e.getMessage());
+            }
+        }
+    }
+
+    private AsyncHttpClient newClient() {
+        return new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder()
+                .setEventLoopGroup(eventLoops)
+                .setNettyTimer(timer)
+                .setThreadPoolName("appium-transport")
+                .setKeepAlive(true)
+                .setPooledConnectionIdleTimeout(keepAliveMillis)
+                .setConnectTimeout(connectTimeoutMillis)
+                .setTcpNoDelay(true)
+                // Only replays a request whose kept-alive connection the server had already closed
+                .setMaxRequestRetry(1)
+                .setFollowRedirect(false)
+                .build());
+    }
+}
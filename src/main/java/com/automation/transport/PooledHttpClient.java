@@ -0,0 +1,167 @@
+package com.automation.transport;
+
+import io.netty.channel.Channel;
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpHandler;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+import org.openqa.selenium.remote.http.WebSocket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The HTTP client of one session, sending its requests over the connections its Appium server
+ * shares in the AppiumTransport, with the read timeout of each request's lane
+ */
+class PooledHttpClient implements HttpClient {
+
+    private final AppiumTransport transport;
+    private final AppiumTransport.Server server;
+    private final ClientConfig config;
+    private final String baseUrl;
+    private final HttpHandler handler;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private HttpClient webSockets;
+
+    PooledHttpClient(AppiumTransport transport, AppiumTransport.Server server, ClientConfig config) {
+        this.transport = transport;
+        this.server = server;
+        this.config = config;
+        String base = config.baseUri().toString();
+        this.baseUrl = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        // Selenium's filters, such as its user agent, still apply
+        this.handler = config.filter().andFinally(this::send);
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) {
+        return handler.execute(request);
+    }
+
+    /**
+     * Web sockets, used by log listeners only, go through Selenium's default client
+     */
+    @Override
+    public synchronized WebSocket openSocket(HttpRequest request, WebSocket.Listener listener) {
+        if (webSockets == null) {
+            webSockets = HttpClient.Factory.createDefault().createClient(config);
+        }
+        return webSockets.openSocket(request, listener);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            transport.release(server);
+            synchronized (this) {
+                if (webSockets != null) {
+                    webSockets.close();
+                }
+            }
+        }
+    }
+
+    private HttpResponse send(HttpRequest request) {
+        AppiumTransport.Lane lane = transport.laneOf(request);
+        Duration timeout = transport.readTimeout(lane);
+        Semaphore permits = server.permits(lane);
+        long start = System.nanoTime();
+        ListenableFuture<Response> future = null;
+        try {
+            // A full lane waits for a connection to come back instead of opening another one
+            Duration acquireTimeout = transport.acquireTimeout(lane);
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                // The server may be fine, its sessions are just using every connection of the lane
+                throw new WebDriverException("HTTP connection pool exhausted: no " + lane + " connection to "
+                        + server.address + " became free within " + acquireTimeout.toMillis() + " ms for "
+                        + request.getMethod() + " " + request.getUri());
+            }
+            try {
+                future = server.client(lane).executeRequest(toRequest(request, timeout), new ConnectionTracking());
+                return toResponse(future.get());
+            } finally {
+                permits.release();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof java.util.concurrent.TimeoutException) {
+                throw new TimeoutException(request.getMethod() + " " + request.getUri() + " got no response within "
+                        + timeout.toSeconds() + " s (" + lane + " lane)", cause);
+            }
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            throw new WebDriverException(cause);
+        } catch (InterruptedException e) {
+            // A cancelled test stops waiting for its command
+            if (future != null) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting for " + request.getMethod() + " " + request.getUri(), e);
+        } finally {
+            transport.recordRequest(lane, System.nanoTime() - start);
+        }
+    }
+
+    private org.asynchttpclient.Request toRequest(HttpRequest request, Duration timeout) {
+        String uri = request.getUri();
+        RequestBuilder builder = new RequestBuilder(request.getMethod().toString())
+                .setUrl(uri.startsWith("http:") || uri.startsWith("https:") ? uri : baseUrl + uri)
+                .setRequestTimeout((int) timeout.toMillis())
+                .setReadTimeout((int) timeout.toMillis());
+        for (String name : request.getQueryParameterNames()) {
+            for (String value : request.getQueryParameters(name)) {
+                builder.addQueryParam(name, value);
+            }
+        }
+        request.forEachHeader(builder::addHeader);
+        if (request.getMethod() == HttpMethod.POST || request.getMethod() == HttpMethod.PUT) {
+            builder.setBody(Contents.bytes(request.getContent()));
+        }
+        return builder.build();
+    }
+
+    private HttpResponse toResponse(Response response) {
+        HttpResponse result = new HttpResponse().setStatus(response.getStatusCode());
+        for (Map.Entry<String, String> header : response.getHeaders()) {
+            result.addHeader(header.getKey(), header.getValue());
+        }
+        result.setContent(Contents.bytes(response.getResponseBodyAsBytes()));
+        result.setTargetHost(server.address);
+        return result;
+    }
+
+    /**
+     * Counts whether each request opened a connection or found a kept-alive one
+     */
+    private final class ConnectionTracking extends AsyncCompletionHandlerBase {
+
+        @Override
+        public void onTcpConnectSuccess(InetSocketAddress remoteAddress, Channel connection) {
+            transport.newConnections.increment();
+        }
+
+        @Override
+        public void onConnectionPooled(Channel connection) {
+            transport.reusedConnections.increment();
+        }
+    }
+}
@@ -5,73 +5,317 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Configuration reader utility to read properties from config files
+ * Configuration reader utility to read properties from config files.
+ * Configuration is loaded once into an immutable snapshot, layered from lowest to highest precedence:
+ * <ol>
+ *     <li>classpath {@code config/defaults.properties}, which also declares every known key and its type</li>
+ *     <li>the config file, {@code -Dconfig.file} or src/test/resources/config/config.properties</li>
+ *     <li>environment variables, {@code APP_PACKAGE} overrides {@code app.package}</li>
+ *     <li>system properties, {@code -Dapp.package=...}</li>
+ * </ol>
+ * A key holding an integer or boolean default must hold the same type in every layer, so bad values
+ * fail the run at startup. Integer and boolean values are parsed once when the snapshot is built.
+ * <p>
+ * Per-device profiles override any key for one device with {@code profile.<udid>.<key>}. The profile
+ * of the device leased by the current thread is used automatically once DriverManager binds it.
  */
 public class ConfigReader {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(ConfigReader.class);
-    private static Properties properties;
+    private static final String DEFAULTS_RESOURCE = "config/defaults.properties";
     private static final String CONFIG_FILE_PATH = "src/test/resources/config/config.properties";
-    
+    private static final String CONFIG_RESOURCE = "config/config.properties";
+    private static final String PROFILE_PREFIX = "profile.";
+    private static volatile Snapshot snapshot;
+    private static final ThreadLocal<Snapshot> boundDevice = new ThreadLocal<>();
+
     static {
         loadProperties();
     }
-    
+
+    /**
+     * Immutable view of the configuration with integer and boolean values already parsed
+     */
+    public static final class Snapshot {
+        private final Map<String, String> values;
+        private final Map<String, Integer> ints;
+        private final Map<String, Boolean> booleans;
+        private final Map<String, Snapshot> devices = new ConcurrentHashMap<>();
+
+        Snapshot(Map<String, String> values) {
+            Map<String, Integer> parsedInts = new HashMap<>();
+            Map<String, Boolean> parsedBooleans = new HashMap<>();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String value = entry.getValue().trim();
+                Integer intValue = parseInt(value);
+                if (intValue != null) {
+                    parsedInts.put(entry.getKey(), intValue);
+                }
+                if (isBoolean(value)) {
+                    parsedBooleans.put(entry.getKey(), Boolean.parseBoolean(value));
+                }
+            }
+            this.values = Collections.unmodifiableMap(new HashMap<>(values));
+            this.ints = Collections.unmodifiableMap(parsedInts);
+            this.booleans = Collections.unmodifiableMap(parsedBooleans);
+        }
+
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        public String get(String key, String defaultValue) {
+            return values.getOrDefault(key, defaultValue);
+        }
+
+        /**
+         * Integer value, the default when the key is missing or empty
+         */
+        public int getInt(String key, int defaultValue) {
+            Integer value = ints.get(key);
+            if (value != null) {
+                return value;
+            }
+            String raw = values.get(key);
+            if (raw == null || raw.trim().isEmpty()) {
+                return defaultValue;
+            }
+            logger.error("Invalid integer property: {} = {}", key, raw);
+            throw new RuntimeException("Invalid integer property: " + key);
+        }
+
+        /**
+         * Boolean value, false unless the key is set to true
+         */
+        public boolean getBoolean(String key) {
+            return booleans.getOrDefault(key, false);
+        }
+
+        public Set<String> keys() {
+            return values.keySet();
+        }
+
+        /**
+         * This snapshot with the profile of one device applied, built once per device
+         */
+        public Snapshot forDevice(String udid) {
+            Snapshot device = devices.get(udid);
+            return device != null ? device : devices.computeIfAbsent(udid, this::withProfile);
+        }
+
+        private Snapshot withProfile(String udid) {
+            String prefix = PROFILE_PREFIX + udid + ".";
+            Map<String, String> merged = new HashMap<>(values);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    merged.put(entry.getKey().substring(prefix.length()), entry.getValue());
+                }
+            }
+            return new Snapshot(merged);
+        }
+    }
+
     /**
-     * Load properties from config file
+     * Load the layered configuration and validate it, failing fast on bad values
      */
     private static void loadProperties() {
+        Properties defaults = new Properties();
+        try (InputStream input = ConfigReader.class.getClassLoader().getResourceAsStream(DEFAULTS_RESOURCE)) {
+            if (input != null) {
+                defaults.load(input);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + DEFAULTS_RESOURCE, e);
+        }
+
+        Map<String, String> values = new HashMap<>();
+        defaults.stringPropertyNames().forEach(key -> values.put(key, defaults.getProperty(key)));
+        loadConfigFile().forEach((key, value) -> values.put((String) key, (String) value));
+
+        // Environment and system properties only override keys a lower layer declares
+        for (String key : new ArrayList<>(values.keySet())) {
+            String env = System.getenv(key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_'));
+            if (env != null) {
+                values.put(key, env);
+            }
+            String systemValue = System.getProperty(key);
+            if (systemValue != null) {
+                values.put(key, systemValue);
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith(PROFILE_PREFIX)) {
+                values.put(key, System.getProperty(key));
+            }
+        }
+
+        validate(defaults, values);
+        snapshot = new Snapshot(values);
+        logger.info("Configuration properties loaded successfully");
+    }
+
+    private static Properties loadConfigFile() {
+        String path = System.getProperty("config.file", CONFIG_FILE_PATH);
+        Properties fileProperties = new Properties();
         try {
-            properties = new Properties();
-            FileInputStream fileInputStream = new FileInputStream(CONFIG_FILE_PATH);
-            properties.load(fileInputStream);
-            fileInputStream.close();
-            logger.info("Configuration properties loaded successfully");
+            if (Files.exists(Paths.get(path))) {
+                try (InputStream input = new FileInputStream(path)) {
+                    fileProperties.load(input);
+                }
+                return fileProperties;
+            }
+            try (InputStream input = ConfigReader.class.getClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+                if (input != null) {
+                    fileProperties.load(input);
+                    return fileProperties;
+                }
+            }
         } catch (IOException e) {
-            logger.error("Failed to load configuration properties: " + e.getMessage());
-            throw new RuntimeException("Configuration file not found: " + CONFIG_FILE_PATH);
+            logger.error("Failed to load configuration properties: {}", e.getMessage());
+        }
+        throw new RuntimeException("Configuration file not found: " + path);
+    }
+
+    /**
+     * Check every value, including profile overrides, against the type of its default
+     */
+    static void validate(Properties defaults, Map<String, String> values) {
+        Set<String> errors = new TreeSet<>();
+        List<String> devices = List.of(values.getOrDefault("devices", "").trim().split("\\s*,\\s*"));
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            String baseKey = key.startsWith(PROFILE_PREFIX) ? profiledKey(key, devices) : key;
+            String defaultValue = baseKey == null ? null : defaults.getProperty(baseKey);
+            String value = entry.getValue().trim();
+            if (defaultValue == null || value.isEmpty()) {
+                continue;
+            }
+            if (parseInt(defaultValue.trim()) != null && parseInt(value) == null) {
+                errors.add(key + " must be an integer: " + value);
+            } else if (isBoolean(defaultValue.trim()) && !isBoolean(value)) {
+                errors.add(key + " must be true or false: " + value);
+            }
+        }
+        if (!errors.isEmpty()) {
+            errors.forEach(error -> logger.error("Invalid configuration: {}", error));
+            throw new RuntimeException("Invalid configuration: " + String.join("; ", errors));
         }
     }
-    
+
+    /**
+     * The key a profile.<udid>.<key> entry overrides. The udid is one of the configured devices
+     * when the entry names one, since serials such as 192.168.1.5:5555 contain dots, otherwise
+     * the segment up to the next dot. Null if the entry has no key after the udid.
+     */
+    static String profiledKey(String profileKey, List<String> devices) {
+        String rest = profileKey.substring(PROFILE_PREFIX.length());
+        for (String udid : devices) {
+            if (!udid.isEmpty() && rest.startsWith(udid + ".")) {
+                return rest.substring(udid.length() + 1);
+            }
+        }
+        int dot = rest.indexOf('.');
+        return dot > 0 && dot < rest.length() - 1 ? rest.substring(dot + 1) : null;
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isBoolean(String value) {
+        return "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value);
+    }
+
+    /**
+     * The snapshot for the current thread: the bound device's profile, or the base configuration
+     */
+    public static Snapshot current() {
+        Snapshot device = boundDevice.get();
+        return device != null ? device : snapshot;
+    }
+
+    /**
+     * The configuration with the profile of the given device applied
+     */
+    public static Snapshot forDevice(String udid) {
+        return snapshot.forDevice(udid);
+    }
+
+    /**
+     * Use the given device's profile for lookups on the current thread
+     */
+    public static void bindDevice(String udid) {
+        boundDevice.set(forDevice(udid));
+    }
+
+    /**
+     * Go back to the base configuration on the current thread
+     */
+    public static void unbindDevice() {
+        boundDevice.remove();
+    }
+
     /**
      * Get property value by key
      */
     public static String getProperty(String key) {
-        String value = properties.getProperty(key);
+        String value = current().get(key);
         if (value == null) {
-            logger.warn("Property not found: " + key);
+            logger.warn("Property not found: {}", key);
         }
         return value;
     }
-    
+
     /**
      * Get property value with default fallback
      */
     public static String getProperty(String key, String defaultValue) {
-        return properties.getProperty(key, defaultValue);
+        return current().get(key, defaultValue);
     }
-    
+
     /**
      * Get integer property
      */
     public static int getIntProperty(String key) {
-        String value = getProperty(key);
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            logger.error("Invalid integer property: " + key + " = " + value);
+        Snapshot config = current();
+        String value = config.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            logger.error("Invalid integer property: {} = {}", key, value);
             throw new RuntimeException("Invalid integer property: " + key);
         }
+        return config.getInt(key, 0);
     }
-    
+
+    /**
+     * Get integer property with default fallback
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        return current().getInt(key, defaultValue);
+    }
+
     /**
      * Get boolean property
      */
     public static boolean getBooleanProperty(String key) {
-        String value = getProperty(key);
-        return Boolean.parseBoolean(value);
+        return current().getBoolean(key);
     }
 }
@@ -2,134 +2,292 @@ package com.automation.utils;
 
 import com.aventstack.extentreports.ExtentReports;
 import com.aventstack.extentreports.ExtentTest;
-import com.aventstack.extentreports.reporter.ExtentSparkReporter;
-import com.aventstack.extentreports.reporter.configuration.Theme;
+import com.aventstack.extentreports.Status;
+import com.aventstack.extentreports.model.Log;
+import com.aventstack.extentreports.model.Media;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Extent Report Manager for generating beautiful test reports
+ * Extent Report Manager for generating beautiful test reports.
+ * Report calls are appended to a JSON Lines event log as they happen instead of being kept
+ * in memory; the Spark HTML report is rendered from that log when the suite finishes.
+ * If the run is aborted the log still holds everything recorded so far, and
+ * ReportRenderer can turn it into a partial report.
+ * Safe for parallel tests: each thread records into its own buffer of the event log and
+ * never touches the shared ExtentReports instance, which only the renderer uses.
  */
 public class ExtentReportManager {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(ExtentReportManager.class);
-    private static ExtentReports extent;
-    private static ThreadLocal<ExtentTest> test = new ThreadLocal<>();
+    private static volatile ReportEventLog eventLog;
+    private static final ThreadLocal<Long> test = new ThreadLocal<>();
+    private static final ThreadLocal<String> testName = new ThreadLocal<>();
+    private static final Map<Long, DetachedTest> detachedTests = new ConcurrentHashMap<>();
+    private static final ExtentReports detachedReport = new ExtentReports();
+    private static final AtomicLong testIds = new AtomicLong();
     private static String reportPath;
-    
+    private static volatile boolean rendered;
+
     /**
      * Initialize Extent Reports
      */
-    public static void initializeReport() {
-        if (extent == null) {
+    public static synchronized void initializeReport() {
+        if (eventLog == null) {
             // Create reports directory if it doesn't exist
             File reportsDir = new File("reports");
             if (!reportsDir.exists()) {
                 reportsDir.mkdirs();
             }
-            
+
             // Generate report file name with timestamp
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+            // Shards of one run get distinct names, their logs are merged with ReportRenderer
+            int shardCount = ConfigReader.getIntProperty("shard.count", 1);
+            String shard = shardCount > 1 ? "_shard-" + ConfigReader.getIntProperty("shard.index", 0) + "-of-" + shardCount : "";
+            timestamp += shard;
             reportPath = "reports/ExtentReport_" + timestamp + ".html";
-            
-            // Initialize Spark reporter
-            ExtentSparkReporter sparkReporter = new ExtentSparkReporter(reportPath);
-            sparkReporter.config().setTheme(Theme.STANDARD);
-            sparkReporter.config().setDocumentTitle("Mobile Test Automation Report");
-            sparkReporter.config().setReportName("Android App Test Results");
-            
-            // Initialize Extent Reports
-            extent = new ExtentReports();
-            extent.attachReporter(sparkReporter);
-            
+            String eventLogPath = "reports/ExtentReport_" + timestamp + ".events.jsonl";
+
+            try {
+                eventLog = new ReportEventLog(Paths.get(eventLogPath));
+            } catch (IOException e) {
+                logger.error("Failed to open report event log: {}", e.getMessage());
+                throw new RuntimeException("Report event log could not be created: " + eventLogPath, e);
+            }
+
             // Add system information
-            extent.setSystemInfo("Platform", "Android");
-            extent.setSystemInfo("Automation Tool", "Appium");
-            extent.setSystemInfo("Framework", "TestNG");
-            extent.setSystemInfo("Tester", System.getProperty("user.name"));
-            
-            logger.info("Extent Reports initialized. Report will be saved at: " + reportPath);
+            Map<String, String> systemInfo = new LinkedHashMap<>();
+            systemInfo.put("Platform", "Android");
+            systemInfo.put("Automation Tool", "Appium");
+            systemInfo.put("Framework", "TestNG");
+            systemInfo.put("Tester", System.getProperty("user.name"));
+            if (!shard.isEmpty()) {
+                systemInfo.put("Shards", String.valueOf(shardCount));
+            }
+            eventLog.append(ReportEvent.SUITE, 0, null, null, null, systemInfo);
+
+            // Still render whatever was recorded if the JVM exits without flushReports
+            Runtime.getRuntime().addShutdownHook(new Thread(ExtentReportManager::flushReports, "report-shutdown"));
+
+            logger.info("Extent Reports initialized. Report will be saved at: {}, events are recorded in {}", reportPath, eventLogPath);
         }
     }
-    
+
+    /**
+     * An ExtentTest handed out by getTest(), not attached to any report. What is logged on it is
+     * copied into the event log of its test.
+     */
+    private static final class DetachedTest {
+        final long testId;
+        final ExtentTest extentTest;
+        int copiedLogs;
+        int copiedMedia;
+
+        DetachedTest(long testId, ExtentTest extentTest) {
+            this.testId = testId;
+            this.extentTest = extentTest;
+        }
+    }
+
     /**
      * Create a new test in the report
      */
     public static void createTest(String testName) {
-        ExtentTest extentTest = extent.createTest(testName);
-        test.set(extentTest);
+        Long previous = test.get();
+        if (previous != null) {
+            endDetachedTest(previous);
+        }
+        long testId = testIds.incrementAndGet();
+        test.set(testId);
+        ExtentReportManager.testName.set(testName);
+        record(ReportEvent.TEST, testName, null, null);
     }
-    
+
     /**
-     * Get current test instance
+     * Get current test instance. Reports are rendered from the event log now, so this is a
+     * stand-in whose logs and screenshots are copied into the event log of the current test,
+     * at the next report call of the test or when reports are flushed.
+     *
+     * @deprecated use logInfo, logPass, logFail, logWarning and addScreenshot instead
      */
+    @Deprecated
     public static ExtentTest getTest() {
-        return test.get();
+        Long testId = test.get();
+        if (testId == null) {
+            return null;
+        }
+        return detachedTests.computeIfAbsent(testId, id -> {
+            synchronized (detachedReport) {
+                ExtentTest extentTest = detachedReport.createTest(testName.get() != null ? testName.get() : "test");
+                // Only the returned object is needed, the report never renders
+                detachedReport.removeTest(extentTest);
+                return new DetachedTest(id, extentTest);
+            }
+        }).extentTest;
     }
-    
+
     /**
      * Log info message to report
      */
     public static void logInfo(String message) {
-        if (getTest() != null) {
-            getTest().info(message);
-        }
+        record("info", message, null, null);
     }
-    
+
     /**
      * Log pass message to report
      */
     public static void logPass(String message) {
-        if (getTest() != null) {
-            getTest().pass(message);
-        }
+        record("pass", message, null, null);
     }
-    
+
     /**
      * Log fail message to report
      */
     public static void logFail(String message) {
-        if (getTest() != null) {
-            getTest().fail(message);
-        }
+        record("fail", message, null, null);
     }
-    
+
     /**
      * Log warning message to report
      */
     public static void logWarning(String message) {
-        if (getTest() != null) {
-            getTest().warning(message);
-        }
+        record("warning", message, null, null);
     }
-    
+
     /**
      * Add screenshot to report
      */
     public static void addScreenshot(String screenshotPath) {
-        if (getTest() != null) {
-            getTest().addScreenCaptureFromPath(screenshotPath);
+        record(ReportEvent.SCREENSHOT, null, screenshotPath, null);
+    }
+
+    /**
+     * Add screenshot to report as a thumbnail linking to the full image.
+     * Falls back to embedding the full image when there is no thumbnail.
+     */
+    public static void addScreenshot(String screenshotPath, String thumbnailPath) {
+        record(ReportEvent.SCREENSHOT, null, screenshotPath, thumbnailPath);
+    }
+
+    /**
+     * Id of the current thread's test, 0 outside a test, for report calls made on its behalf elsewhere
+     */
+    static long currentTestId() {
+        Long testId = test.get();
+        return testId != null ? testId : 0;
+    }
+
+    /**
+     * Show a screenshot of a test as unchanged since an earlier one instead of its image,
+     * recorded by whichever thread found out
+     */
+    static void markUnchanged(long testId, String screenshotPath, String message) {
+        if (eventLog != null && testId != 0) {
+            eventLog.append(ReportEvent.UNCHANGED, testId, message, screenshotPath, null, null);
+        }
+    }
+
+    /**
+     * Add a suite-level section to the report, e.g. a metrics table, without touching the current test
+     */
+    public static void addSummary(String title, String html) {
+        if (eventLog != null) {
+            long summaryId = testIds.incrementAndGet();
+            eventLog.append(ReportEvent.TEST, summaryId, title, null, null, null);
+            eventLog.append("info", summaryId, html, null, null, null);
         }
     }
     
     /**
      * Flush reports and save
      */
-    public static void flushReports() {
-        if (extent != null) {
-            extent.flush();
-            logger.info("Extent Reports flushed successfully. Report saved at: " + reportPath);
+    public static synchronized void flushReports() {
+        if (eventLog != null && !rendered) {
+            rendered = true;
+            for (Long testId : List.copyOf(detachedTests.keySet())) {
+                endDetachedTest(testId);
+            }
+            eventLog.close();
+            try {
+                ReportRenderer.render(Collections.singletonList(eventLog.getPath()), Paths.get(reportPath));
+                logger.info("Extent Reports flushed successfully. Report saved at: {}", reportPath);
+            } catch (IOException e) {
+                logger.error("Failed to render report from {}: {}", eventLog.getPath(), e.getMessage());
+            }
         }
     }
-    
+
     /**
      * Get report path
      */
     public static String getReportPath() {
         return reportPath;
     }
+
+    /**
+     * Append an event for the current thread's test, if there is one
+     */
+    private static void record(String type, String message, String screenshotPath, String thumbnailPath) {
+        Long testId = test.get();
+        if (testId != null && eventLog != null) {
+            DetachedTest detached = detachedTests.get(testId);
+            if (detached != null) {
+                copyDetached(detached);
+            }
+            eventLog.append(type, testId, message, screenshotPath, thumbnailPath, null);
+        }
+    }
+
+    private static void endDetachedTest(long testId) {
+        DetachedTest detached = detachedTests.remove(testId);
+        if (detached != null) {
+            copyDetached(detached);
+        }
+    }
+
+    /**
+     * Append what was logged on a getTest() stand-in since the last copy
+     */
+    private static void copyDetached(DetachedTest detached) {
+        if (eventLog == null) {
+            return;
+        }
+        synchronized (detached) {
+            List<Log> logs = detached.extentTest.getModel().getLogs();
+            for (; detached.copiedLogs < logs.size(); detached.copiedLogs++) {
+                Log log = logs.get(detached.copiedLogs);
+                if (log.getDetails() != null && !log.getDetails().isEmpty()) {
+                    eventLog.append(toType(log.getStatus()), detached.testId, log.getDetails(), null, null, null);
+                }
+                if (log.getMedia() != null && log.getMedia().getPath() != null) {
+                    eventLog.append(ReportEvent.SCREENSHOT, detached.testId, null, log.getMedia().getPath(), null, null);
+                }
+            }
+            List<Media> media = detached.extentTest.getModel().getMedia();
+            for (; detached.copiedMedia < media.size(); detached.copiedMedia++) {
+                if (media.get(detached.copiedMedia).getPath() != null) {
+                    eventLog.append(ReportEvent.SCREENSHOT, detached.testId, null, media.get(detached.copiedMedia).getPath(), null, null);
+                }
+            }
+        }
+    }
+
+    private static String toType(Status status) {
+        return status == Status.PASS || status == Status.FAIL || status == Status.WARNING || status == Status.SKIP
+                ? status.name().toLowerCase(Locale.ROOT) : "info";
+    }
 }
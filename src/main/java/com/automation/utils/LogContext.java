@@ -0,0 +1,80 @@
+package com.automation.utils;
+
+import org.openqa.selenium.remote.SessionId;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * MDC keys that tag every log line with the device, session, test and step it belongs to, so the
+ * interleaved logs of a parallel run can be split apart again (see logback.xml). The keys live on
+ * the thread that sets them; work handed to another thread takes them along through propagate().
+ */
+public final class LogContext {
+
+    public static final String DEVICE = "device";
+    public static final String SESSION = "session";
+    public static final String TEST = "test";
+    public static final String STEP = "step";
+
+    private LogContext() {
+    }
+
+    /**
+     * Tag the current thread's log lines with the device it leased
+     */
+    public static void setDevice(String udid) {
+        MDC.put(DEVICE, udid);
+    }
+
+    /**
+     * Tag the current thread's log lines with its Appium session
+     */
+    public static void setSession(SessionId sessionId) {
+        if (sessionId != null) {
+            MDC.put(SESSION, sessionId.toString());
+        }
+    }
+
+    /**
+     * Drop the device and session once the thread gives its device back
+     */
+    public static void clearDevice() {
+        MDC.remove(DEVICE);
+        MDC.remove(SESSION);
+    }
+
+    public static void setTest(String testName) {
+        MDC.put(TEST, testName);
+    }
+
+    public static void clearTest() {
+        MDC.remove(TEST);
+        MDC.remove(STEP);
+    }
+
+    /**
+     * Tag log lines with a test step until the returned handle is closed
+     */
+    public static MDC.MDCCloseable step(String stepName) {
+        return MDC.putCloseable(STEP, stepName);
+    }
+
+    /**
+     * Wrap work for another thread so that it logs with the context of the thread wrapping it
+     */
+    public static <T> Callable<T> propagate(Callable<T> work) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            if (context != null) {
+                MDC.setContextMap(context);
+            }
+            try {
+                return work.call();
+            } finally {
+                MDC.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.automation.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Perceptual hash of a screenshot: the mean luminance of each cell of a 32x32 grid.
+ * Identical frames hash to the same value and near-identical ones, e.g. re-rendered with
+ * slightly different anti-aliasing, differ in no cell by more than a small tolerance.
+ * The distance between two hashes is the number of cells that visibly changed, so typing
+ * a few characters into one field still counts as a change while a redraw of the same
+ * screen does not. Gradient hashes such as an 8x8 dHash are too coarse for that on a
+ * tall phone screen.
+ */
+public class PerceptualHash {
+
+    private static final int GRID = 32;
+    private static final int DECODE_TARGET = 256;
+    private static final int CELL_TOLERANCE = 6;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hash encoded image bytes, decoding them subsampled since only cell averages are needed
+     */
+    public static byte[] of(byte[] encodedImage) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encodedImage))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / DECODE_TARGET);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return of(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Hash a decoded image
+     */
+    public static byte[] of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[GRID * GRID];
+        int[] counts = new int[GRID * GRID];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * GRID / height * GRID;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                // Integer approximation of Rec. 601 luma
+                int luma = (((rgb >> 16) & 0xff) * 77 + ((rgb >> 8) & 0xff) * 150 + (rgb & 0xff) * 29) >> 8;
+                int cell = cellRow + x * GRID / width;
+                sums[cell] += luma;
+                counts[cell]++;
+            }
+        }
+
+        byte[] hash = new byte[GRID * GRID];
+        for (int i = 0; i < hash.length; i++) {
+            hash[i] = (byte) (counts[i] == 0 ? 0 : sums[i] / counts[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Number of grid cells whose luminance differs beyond the tolerance, 0 for identical frames
+     */
+    public static int distance(byte[] first, byte[] second) {
+        int distance = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (Math.abs((first[i] & 0xff) - (second[i] & 0xff)) > CELL_TOLERANCE) {
+                distance++;
+            }
+        }
+        return distance;
+    }
+}
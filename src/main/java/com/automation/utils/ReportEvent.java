@@ -0,0 +1,28 @@
+package com.automation.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * One line of the report event log
+ *
+ * @param seq       position of the event in the log
+ * @param timestamp epoch millis when the event was recorded
+ * @param type      suite, test, info, pass, fail, warning, skip, screenshot or unchanged, which marks
+ *                  the screenshot at path as a repeat of an earlier one, described by message
+ * @param testId    id of the test node the event belongs to, 0 for suite events
+ * @param message   test name for test events, log text otherwise
+ * @param path      screenshot path for screenshot events
+ * @param thumbnail optional thumbnail path for screenshot events
+ * @param info      system information for suite events
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReportEvent(long seq, long timestamp, String type, long testId, String message,
+                          String path, String thumbnail, Map<String, String> info) {
+    
+    public static final String SUITE = "suite";
+    public static final String TEST = "test";
+    public static final String SCREENSHOT = "screenshot";
+    public static final String UNCHANGED = "unchanged";
+}
@@ -0,0 +1,174 @@
+package com.automation.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only JSON Lines log of report events.
+ * Recording threads only enqueue into their own lock-free buffer; a single writer thread
+ * drains all buffers, serializes the events and hands them to the operating system, so
+ * report calls never contend on a lock or wait for the disk. Nothing is kept in memory
+ * beyond the few milliseconds an event waits for the writer, and everything written
+ * before a crash is still on disk afterwards.
+ */
+public class ReportEventLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportEventLog.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Path path;
+    private final BufferedWriter writer;
+    private final List<Buffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Buffer> localBuffer = ThreadLocal.withInitial(this::registerBuffer);
+    private final Thread writerThread;
+    private volatile boolean closed;
+    private long seq;
+
+    /**
+     * Events recorded by one thread, in recording order
+     */
+    private static final class Buffer {
+        final Thread owner = Thread.currentThread();
+        final Queue<ReportEvent> events = new ConcurrentLinkedQueue<>();
+        // Bumped by the owner on entering and leaving an append, odd while one is in progress,
+        // so the final drain can wait for it
+        volatile int appends;
+    }
+
+    public ReportEventLog(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.path = path;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        // A virtual thread, parked between drains, so it holds no platform thread while idle
+        this.writerThread = Thread.ofVirtual().name("report-event-writer").start(this::runWriter);
+    }
+
+    /**
+     * Record an event. Only enqueues into the calling thread's buffer; the sequence number
+     * is assigned by the writer.
+     */
+    public void append(String type, long testId, String message, String screenshotPath,
+                       String thumbnailPath, Map<String, String> info) {
+        Buffer buffer = localBuffer.get();
+        buffer.appends++;
+        try {
+            if (closed) {
+                logger.warn("Report event after close ignored: {}", type);
+                return;
+            }
+            buffer.events.offer(new ReportEvent(0, System.currentTimeMillis(), type, testId, message,
+                    screenshotPath, thumbnailPath, info));
+        } finally {
+            buffer.appends++;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Stop the writer after it has written every recorded event, then close the file
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Failed to close report event log: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Read one line of a log back into an event
+     */
+    static ReportEvent parse(String line) throws IOException {
+        return mapper.readValue(line, ReportEvent.class);
+    }
+
+    private Buffer registerBuffer() {
+        Buffer buffer = new Buffer();
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private void runWriter() {
+        while (!closed) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        // Final pass for events recorded before close. An append that saw the log still open may
+        // not have enqueued yet, wait for it so its event is not left behind in its buffer.
+        for (Buffer buffer : buffers) {
+            int appends = buffer.appends;
+            while ((appends & 1) == 1 && buffer.appends == appends) {
+                Thread.onSpinWait();
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Write everything currently buffered, the only code that touches the file
+     */
+    private int drain() {
+        int written = 0;
+        for (Buffer buffer : buffers) {
+            ReportEvent event;
+            while ((event = buffer.events.poll()) != null) {
+                write(event);
+                written++;
+            }
+            if (!buffer.owner.isAlive() && buffer.events.isEmpty()) {
+                buffers.remove(buffer);
+            }
+        }
+        if (written > 0) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                logger.error("Failed to flush report events: {}", e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private void write(ReportEvent event) {
+        ReportEvent numbered = new ReportEvent(++seq, event.timestamp(), event.type(), event.testId(),
+                event.message(), event.path(), event.thumbnail(), event.info());
+        try {
+            writer.write(mapper.writeValueAsString(numbered));
+            writer.newLine();
+        } catch (IOException e) {
+            logger.error("Failed to write report event: {}", e.getMessage());
+        }
+    }
+}
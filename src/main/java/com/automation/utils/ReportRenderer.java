@@ -0,0 +1,275 @@
+package com.automation.utils;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.Status;
+import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import com.aventstack.extentreports.reporter.configuration.Theme;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Builds the Spark HTML report from one or more report event logs.
+ * Runs after the suite, or by hand on the log of an aborted run or the logs of all shards of a
+ * sharded run, given as files or directories to search for event logs:
+ * <pre>java -cp ... com.automation.utils.ReportRenderer reports/run.events.jsonl [report.html]</pre>
+ */
+public class ReportRenderer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReportRenderer.class);
+    
+    private ReportRenderer() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ReportRenderer <events.jsonl|directory>... [report.html]");
+            System.exit(1);
+        }
+        List<Path> logs = new ArrayList<>();
+        Path output = null;
+        for (String arg : args) {
+            if (arg.endsWith(".html")) {
+                output = Paths.get(arg);
+            } else if (Files.isDirectory(Paths.get(arg))) {
+                try (Stream<Path> files = Files.walk(Paths.get(arg))) {
+                    files.filter(file -> file.toString().endsWith(".events.jsonl")).sorted().forEach(logs::add);
+                }
+            } else {
+                logs.add(Paths.get(arg));
+            }
+        }
+        if (logs.isEmpty()) {
+            System.err.println("No report event logs found in " + Arrays.toString(args));
+            System.exit(1);
+        }
+        if (output == null) {
+            output = logs.size() > 1
+                    ? logs.get(0).toAbsolutePath().getParent().resolve("ExtentReport_merged.html")
+                    : Paths.get(logs.get(0).toString().replaceAll("\\.events\\.jsonl$|\\.jsonl$", "") + ".html");
+        }
+        render(logs, output);
+    }
+    
+    /**
+     * Render the events of all logs into a single HTML report.
+     * Events are grouped per test, so tests that ran in parallel and interleaved in the log
+     * come out whole. Tests are ordered by name, then by the order they started in, which
+     * makes the report independent of thread scheduling. Only the position of each event in
+     * its log is held in memory; a test's events are read back from the log as it is rendered.
+     */
+    public static void render(List<Path> logs, Path output) throws IOException {
+        ExtentSparkReporter sparkReporter = new ExtentSparkReporter(output.toString());
+        sparkReporter.config().setTheme(Theme.STANDARD);
+        sparkReporter.config().setDocumentTitle("Mobile Test Automation Report");
+        sparkReporter.config().setReportName("Android App Test Results");
+        
+        ExtentReports extent = new ExtentReports();
+        extent.attachReporter(sparkReporter);
+        
+        List<TestEvents> tests = new ArrayList<>();
+        int eventCount = 0;
+        for (int logIndex = 0; logIndex < logs.size(); logIndex++) {
+            eventCount += readLog(extent, logs.get(logIndex), logIndex, tests);
+        }
+        tests.sort(Comparator.comparing((TestEvents test) -> test.name)
+                .thenComparingInt(test -> test.logIndex)
+                .thenComparingLong(test -> test.firstSeq));
+        RandomAccessFile[] files = new RandomAccessFile[logs.size()];
+        try {
+            for (int logIndex = 0; logIndex < logs.size(); logIndex++) {
+                files[logIndex] = new RandomAccessFile(logs.get(logIndex).toFile(), "r");
+            }
+            for (TestEvents test : tests) {
+                apply(extent, test, files[test.logIndex], output);
+            }
+        } finally {
+            for (RandomAccessFile file : files) {
+                if (file != null) {
+                    file.close();
+                }
+            }
+        }
+        extent.flush();
+        logger.info("Rendered {} report events of {} tests from {} log(s) into {}", eventCount, tests.size(), logs.size(), output);
+    }
+    
+    /**
+     * Where the events of one test are in its log, in the order they were recorded
+     */
+    private static final class TestEvents {
+        final int logIndex;
+        final long firstSeq;
+        final String name;
+        final long startTime;
+        long[] offsets = new long[8];
+        int[] lengths = new int[8];
+        int size;
+        /** Screenshot paths found to repeat an earlier frame, and what to show instead */
+        Map<String, String> unchanged;
+        
+        TestEvents(int logIndex, ReportEvent start) {
+            this.logIndex = logIndex;
+            this.firstSeq = start.seq();
+            this.name = start.message() != null ? start.message() : "";
+            this.startTime = start.timestamp();
+        }
+        
+        void add(long offset, int length) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            offsets[size] = offset;
+            lengths[size] = length;
+            size++;
+        }
+    }
+    
+    /**
+     * Read a log, applying suite events directly and indexing the rest by test
+     */
+    private static int readLog(ExtentReports extent, Path log, int logIndex, List<TestEvents> tests) throws IOException {
+        Map<Long, TestEvents> byId = new HashMap<>();
+        int count = 0;
+        try (InputStream input = Files.newInputStream(log)) {
+            byte[] buffer = new byte[64 * 1024];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = 0;
+            long lineStart = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                int from = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, from, i - from);
+                        count += index(extent, log, line, lineStart, byId, logIndex, tests);
+                        line.reset();
+                        from = i + 1;
+                        lineStart = position + from;
+                    }
+                }
+                line.write(buffer, from, read - from);
+                position += read;
+            }
+            count += index(extent, log, line, lineStart, byId, logIndex, tests);
+        }
+        return count;
+    }
+    
+    /**
+     * Apply or index one line of a log, returning 1 if it held an event
+     */
+    private static int index(ExtentReports extent, Path log, ByteArrayOutputStream line, long offset,
+                             Map<Long, TestEvents> byId, int logIndex, List<TestEvents> tests) {
+        String text = line.toString(StandardCharsets.UTF_8);
+        if (text.isBlank()) {
+            return 0;
+        }
+        ReportEvent event;
+        try {
+            event = ReportEventLog.parse(text);
+        } catch (IOException e) {
+            // The last line of an aborted run may be cut off
+            logger.warn("Skipping unreadable report event in {}: {}", log, e.getMessage());
+            return 0;
+        }
+        if (ReportEvent.SUITE.equals(event.type())) {
+            if (event.info() != null) {
+                event.info().forEach(extent::setSystemInfo);
+            }
+        } else if (ReportEvent.TEST.equals(event.type())) {
+            TestEvents test = new TestEvents(logIndex, event);
+            byId.put(event.testId(), test);
+            tests.add(test);
+        } else if (ReportEvent.UNCHANGED.equals(event.type())) {
+            // Recorded when the screenshot writer got to the frame, after its screenshot event
+            TestEvents test = byId.get(event.testId());
+            if (test != null) {
+                if (test.unchanged == null) {
+                    test.unchanged = new HashMap<>();
+                }
+                test.unchanged.put(event.path(), event.message());
+            }
+        } else {
+            TestEvents test = byId.get(event.testId());
+            if (test != null) {
+                test.add(offset, line.size());
+            }
+        }
+        return 1;
+    }
+    
+    private static void apply(ExtentReports extent, TestEvents events, RandomAccessFile log, Path output) throws IOException {
+        ExtentTest test = extent.createTest(events.name);
+        test.getModel().setStartTime(new Date(events.startTime));
+        test.getModel().setEndTime(new Date(events.startTime));
+        byte[] line = new byte[0];
+        for (int i = 0; i < events.size; i++) {
+            if (line.length < events.lengths[i]) {
+                line = new byte[Math.max(events.lengths[i], line.length * 2)];
+            }
+            log.seek(events.offsets[i]);
+            log.readFully(line, 0, events.lengths[i]);
+            ReportEvent event = ReportEventLog.parse(new String(line, 0, events.lengths[i], StandardCharsets.UTF_8));
+            Date timestamp = new Date(event.timestamp());
+            String unchanged = events.unchanged == null ? null : events.unchanged.get(event.path());
+            if (unchanged != null) {
+                test.info(unchanged);
+            } else if (ReportEvent.SCREENSHOT.equals(event.type())) {
+                if (event.thumbnail() != null) {
+                    test.info("<a href='" + relativeTo(output, event.path()) + "' target='_blank'>"
+                            + "<img src='" + relativeTo(output, event.thumbnail()) + "' alt='screenshot' loading='lazy'/></a>");
+                } else {
+                    test.addScreenCaptureFromPath(event.path());
+                }
+            } else {
+                test.log(toStatus(event.type()), event.message());
+            }
+            if (!test.getModel().getLogs().isEmpty()) {
+                test.getModel().getLogs().get(test.getModel().getLogs().size() - 1).setTimestamp(timestamp);
+            }
+            test.getModel().setEndTime(timestamp);
+        }
+    }
+    
+    private static Status toStatus(String type) {
+        switch (type) {
+            case "pass":
+                return Status.PASS;
+            case "fail":
+                return Status.FAIL;
+            case "warning":
+                return Status.WARNING;
+            case "skip":
+                return Status.SKIP;
+            default:
+                return Status.INFO;
+        }
+    }
+    
+    /**
+     * Path of a file relative to the directory holding the HTML report
+     */
+    private static String relativeTo(Path output, String path) {
+        Path reportDir = output.toAbsolutePath().getParent();
+        return reportDir.relativize(Paths.get(path).toAbsolutePath()).toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,146 @@
+package com.automation.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Re-encodes raw PNG screenshots according to the configured output policy:
+ * maximum dimension, output format and quality, grayscale, and report thumbnails.
+ * Runs on the screenshot writer threads, never on the test thread.
+ */
+public class ScreenshotEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenshotEncoder.class);
+
+    /**
+     * Output policy read from the screenshot.* configuration keys
+     *
+     * @param format        png, jpg or webp
+     * @param quality       0-100 compression quality for lossy formats
+     * @param maxDimension  longest side in pixels, 0 keeps the device resolution
+     * @param grayscale     whether to drop colour
+     * @param thumbnailSize longest side of the report thumbnail, 0 disables thumbnails
+     */
+    public record Policy(String format, int quality, int maxDimension, boolean grayscale, int thumbnailSize) {
+
+        public static Policy fromConfig() {
+            String format = ConfigReader.getProperty("screenshot.format", "png").trim().toLowerCase(Locale.ROOT);
+            if ("jpeg".equals(format)) {
+                format = "jpg";
+            }
+            if (!format.equals("png") && !format.equals("jpg") && !format.equals("webp")) {
+                throw new IllegalArgumentException("Unsupported screenshot.format: " + format);
+            }
+            if (format.equals("webp") && !ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+                logger.warn("No WebP image writer on the classpath, writing JPEG screenshots instead");
+                format = "jpg";
+            }
+            int quality = ConfigReader.getIntProperty("screenshot.quality", 80);
+            if (quality < 1 || quality > 100) {
+                throw new IllegalArgumentException("screenshot.quality must be between 1 and 100: " + quality);
+            }
+            return new Policy(format, quality,
+                    ConfigReader.getIntProperty("screenshot.max.dimension", 0),
+                    ConfigReader.getBooleanProperty("screenshot.grayscale"),
+                    ConfigReader.getIntProperty("screenshot.thumbnail.size", 0));
+        }
+
+        /**
+         * Whether the raw PNG can be written as is, without decoding it
+         */
+        public boolean isPassThrough() {
+            return format.equals("png") && maxDimension <= 0 && !grayscale;
+        }
+
+        public boolean hasThumbnail() {
+            return thumbnailSize > 0;
+        }
+    }
+
+    private ScreenshotEncoder() {
+    }
+
+    /**
+     * Encode the raw PNG screenshot according to the policy
+     */
+    public static byte[] encode(byte[] png, Policy policy) throws IOException {
+        if (policy.isPassThrough()) {
+            return png;
+        }
+        BufferedImage image = decode(png);
+        return write(scale(image, policy.maxDimension(), policy.grayscale()), policy.format(), policy.quality());
+    }
+
+    /**
+     * Small JPEG thumbnail for the report, loaded instead of the full image until clicked
+     */
+    public static byte[] thumbnail(byte[] png, Policy policy) throws IOException {
+        return write(scale(decode(png), policy.thumbnailSize(), policy.grayscale()), "jpg", 70);
+    }
+
+    private static BufferedImage decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IOException("Screenshot is not a readable image");
+        }
+        return image;
+    }
+
+    /**
+     * Downscale so that the longest side fits the limit, and convert to an opaque or gray image
+     */
+    private static BufferedImage scale(BufferedImage image, int maxDimension, boolean grayscale) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        double factor = maxDimension > 0 && longest > maxDimension ? (double) maxDimension / longest : 1.0;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+
+        // Lossy formats have no alpha channel, so the target is always opaque
+        BufferedImage target = new BufferedImage(width, height,
+                grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return target;
+    }
+
+    private static byte[] write(BufferedImage image, String format, int quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!format.equals("png") && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes().length > 0) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
@@ -1,77 +1,415 @@
 package com.automation.utils;
 
+import com.automation.base.Device;
 import com.automation.base.DriverManager;
-import org.apache.commons.io.FileUtils;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebElement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Screenshot utility for capturing and saving screenshots
+ * Screenshot utility for capturing and saving screenshots.
+ * The test thread only pays for the device round trip: the raw bytes are handed to a
+ * background writer with a bounded queue. When the queue is full the test thread writes
+ * the file itself, which throttles capture to the speed of the disk.
+ * Frames that are perceptually identical to the last stored frame of the same test are not
+ * written at all: the writer hashes each frame in turn and, for a repeat, has the report show
+ * "unchanged since" the earlier step in place of its image. Hashing decodes the PNG, some 50 ms
+ * for a 1080x2400 frame, so it stays off the test thread too.
+ * Output format, size and report thumbnails follow the ScreenshotEncoder policy.
+ * With screenshot.buffer.frames set, step screenshots are only kept in memory, the last N of
+ * each test within screenshot.buffer.max.bytes, already scaled down to small JPEGs by the
+ * writer, and reach the disk only when the test fails.
  */
 public class ScreenshotUtils {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(ScreenshotUtils.class);
     private static final String SCREENSHOT_DIR = "test-output/screenshots";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss-SSS");
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final AtomicLong failedWrites = new AtomicLong();
+    private static final ThreadLocal<CompletableFuture<StoredFrame>> lastStored = new ThreadLocal<>();
+    private static final ThreadLocal<ArrayDeque<Frame>> recentFrames = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final LongAdder bufferedFrames = new LongAdder();
+    private static final LongAdder persistedFrames = new LongAdder();
+    private static final LongAdder dedupedFrames = new LongAdder();
+    private static ThreadPoolExecutor writer;
+    private static boolean drained;
+    private static volatile ScreenshotEncoder.Policy policy;
     
+    /**
+     * Result of a capture: the paths its frame and thumbnail will be written to. A deduplicated
+     * frame that repeats an earlier one of its test is never written, its report entry says so.
+     * The thumbnail path is null when thumbnails are disabled.
+     */
+    public record Screenshot(String name, String path, String thumbnailPath) {
+    }
+
+    /**
+     * The last frame of a test that was written, which later repeats of it point to
+     */
+    private record StoredFrame(String name, String path, String thumbnailPath, byte[] hash) {
+    }
+
+    /**
+     * A buffered frame: the small JPEG the writer scales it down to, null if it could not be decoded.
+     * Until the writer is done the frame is counted at the size of its PNG, which it still holds.
+     */
+    private record Frame(String name, CompletableFuture<byte[]> jpeg, int pngSize) {
+
+        int size() {
+            byte[] bytes = jpeg.getNow(null);
+            return bytes != null ? bytes.length : jpeg.isDone() ? 0 : pngSize;
+        }
+    }
+
     /**
      * Take screenshot and save with timestamp
      */
     public static String takeScreenshot(String testName) {
+        return capture(testName).path();
+    }
+    
+    /**
+     * Take a screenshot, or only note in the report that it repeats the last stored frame of this test
+     */
+    public static Screenshot capture(String name) {
+        return capture(name, ConfigReader.getBooleanProperty("screenshot.dedupe.enabled"));
+    }
+    
+    /**
+     * Forget the last stored frame and the buffered frames, called at the start of each test
+     */
+    public static void resetTestContext() {
+        lastStored.remove();
+        discardBufferedFrames();
+    }
+
+    /**
+     * Whether step screenshots go to the in-memory ring buffer instead of the disk
+     */
+    public static boolean isBuffering() {
+        return ConfigReader.getIntProperty("screenshot.buffer.frames", 0) > 0;
+    }
+
+    /**
+     * Keep a step screenshot in the current test's ring buffer, scaled down to a JPEG of
+     * screenshot.buffer.max.dimension by the writer. The oldest frames are dropped once the buffer
+     * holds screenshot.buffer.frames frames or screenshot.buffer.max.bytes bytes.
+     */
+    public static void buffer(String name) {
+        TakesScreenshot takesScreenshot = (TakesScreenshot) DriverManager.getDriver();
+        byte[] png = takesScreenshot.getScreenshotAs(OutputType.BYTES);
+        ScreenshotEncoder.Policy framePolicy = bufferPolicy();
+        CompletableFuture<byte[]> jpeg = new CompletableFuture<>();
+        getWriter().execute(() -> {
+            if (jpeg.isDone()) {
+                // Dropped from the buffer before the writer got to it
+                return;
+            }
+            try {
+                jpeg.complete(ScreenshotEncoder.encode(png, framePolicy));
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Could not scale down buffered screenshot {}: {}", name, e.getMessage());
+                jpeg.complete(null);
+            }
+        });
+
+        ArrayDeque<Frame> frames = recentFrames.get();
+        frames.addLast(new Frame(name, jpeg, png.length));
+        int maxFrames = ConfigReader.getIntProperty("screenshot.buffer.frames", 0);
+        long maxBytes = ConfigReader.getIntProperty("screenshot.buffer.max.bytes", 1048576);
+        long bytes = frames.stream().mapToLong(Frame::size).sum();
+        // The newest frame always stays, it is the closest to the failure
+        while (frames.size() > 1 && (frames.size() > maxFrames || bytes > maxBytes)) {
+            Frame dropped = frames.pollFirst();
+            bytes -= dropped.size();
+            dropped.jpeg().complete(null);
+        }
+        bufferedFrames.increment();
+        logger.debug("Screenshot {} buffered, {} frame(s) of about {} bytes held", name, frames.size(), bytes);
+    }
+
+    /**
+     * Queue the buffered frames of the current test for writing, oldest first, and empty the buffer
+     */
+    public static List<Screenshot> persistBufferedFrames() {
+        ArrayDeque<Frame> frames = recentFrames.get();
+        recentFrames.remove();
+        if (frames.isEmpty()) {
+            return List.of();
+        }
+        ScreenshotEncoder.Policy framePolicy = bufferPolicy();
+        List<Screenshot> stored = new ArrayList<>(frames.size());
+        for (Frame frame : frames) {
+            Screenshot screenshot = newScreenshot(frame.name(), framePolicy);
+            getWriter().execute(() -> {
+                byte[] jpeg = frame.jpeg().join();
+                if (jpeg != null) {
+                    write(Paths.get(screenshot.path()), jpeg);
+                } else {
+                    failedWrites.incrementAndGet();
+                }
+            });
+            stored.add(screenshot);
+        }
+        persistedFrames.add(stored.size());
+        logger.info("Persisted the last {} buffered screenshot(s) of the failed test", stored.size());
+        return stored;
+    }
+
+    /**
+     * Drop the buffered frames of the current test without writing them
+     */
+    public static void discardBufferedFrames() {
+        recentFrames.get().forEach(frame -> frame.jpeg().complete(null));
+        recentFrames.remove();
+    }
+
+    /**
+     * Buffered frames over the suite and how many of them had to be written
+     */
+    public static String getBufferSummary() {
+        return "Screenshot buffer: " + bufferedFrames.sum() + " frames buffered, "
+                + persistedFrames.sum() + " written for failed tests";
+    }
+    
+    private static Screenshot capture(String name, boolean dedupe) {
+        // Grab the raw bytes on the test thread, this is the only device round trip
+        TakesScreenshot takesScreenshot = (TakesScreenshot) DriverManager.getDriver();
+        byte[] png = takesScreenshot.getScreenshotAs(OutputType.BYTES);
+
+        Screenshot stored = dedupe ? storeUnlessDuplicate(name, png) : store(name, png);
+        logger.info("Screenshot captured: {}", stored.path());
+        return stored;
+    }
+
+    /**
+     * Queue a frame that the writer compares with the previous frame of this test. Frames of a
+     * test are resolved in capture order: each waits for the one before it, whose hash is
+     * computed meanwhile. A match is not written; the report shows it as unchanged instead.
+     * Outside a report test there is nothing to note that in, so every frame is written.
+     */
+    private static Screenshot storeUnlessDuplicate(String name, byte[] png) {
+        long testId = ExtentReportManager.currentTestId();
+        if (testId == 0) {
+            return store(name, png);
+        }
+        ScreenshotEncoder.Policy outputPolicy = getPolicy();
+        Screenshot screenshot = newScreenshot(name, outputPolicy);
+        int maxDistance = ConfigReader.getIntProperty("screenshot.dedupe.max.distance", 0);
+        CompletableFuture<StoredFrame> previous = lastStored.get();
+        CompletableFuture<StoredFrame> resolved = new CompletableFuture<>();
+        lastStored.set(resolved);
+        getWriter().execute(() -> {
+            StoredFrame frame = null;
+            try {
+                frame = writeUnlessDuplicate(png, outputPolicy, screenshot, previous, maxDistance, testId);
+            } finally {
+                // Never leave the next frame of the test waiting
+                resolved.complete(frame);
+            }
+        });
+        return screenshot;
+    }
+
+    private static StoredFrame writeUnlessDuplicate(byte[] png, ScreenshotEncoder.Policy outputPolicy, Screenshot screenshot,
+                                                    CompletableFuture<StoredFrame> previous, int maxDistance, long testId) {
+        byte[] hash = hashOf(png);
+        StoredFrame earlier = previous == null ? null : previous.join();
+        if (hash != null && earlier != null && earlier.hash() != null
+                && PerceptualHash.distance(hash, earlier.hash()) <= maxDistance) {
+            ExtentReportManager.markUnchanged(testId, screenshot.path(),
+                    "Screenshot " + screenshot.name() + " unchanged since " + earlier.name());
+            dedupedFrames.increment();
+            logger.info("Screenshot {} unchanged since {}, not stored", screenshot.name(), earlier.name());
+            return earlier;
+        }
+        encodeAndWrite(png, outputPolicy, screenshot.path(), screenshot.thumbnailPath());
+        return new StoredFrame(screenshot.name(), screenshot.path(), screenshot.thumbnailPath(), hash);
+    }
+    
+    /**
+     * Capture only the region of one element through the element screenshot API
+     */
+    public static Screenshot captureElement(WebElement element, String name) {
+        byte[] png = element.getScreenshotAs(OutputType.BYTES);
+        Screenshot stored = store(name, png);
+        logger.info("Element screenshot captured: {}", stored.path());
+        return stored;
+    }
+    
+    /**
+     * Queue the encoding and writing of a frame, returning the paths it will be written to
+     */
+    private static Screenshot store(String name, byte[] png) {
+        return store(name, png, getPolicy());
+    }
+
+    private static Screenshot store(String name, byte[] png, ScreenshotEncoder.Policy outputPolicy) {
+        Screenshot screenshot = newScreenshot(name, outputPolicy);
+        getWriter().execute(() -> encodeAndWrite(png, outputPolicy, screenshot.path(), screenshot.thumbnailPath()));
+        return screenshot;
+    }
+
+    private static Screenshot newScreenshot(String name, ScreenshotEncoder.Policy outputPolicy) {
+        String baseName = SCREENSHOT_DIR + "/" + uniqueFileName(name);
+        return new Screenshot(name, baseName + "." + outputPolicy.format(),
+                outputPolicy.hasThumbnail() ? baseName + "_thumb.jpg" : null);
+    }
+    
+    private static void encodeAndWrite(byte[] png, ScreenshotEncoder.Policy outputPolicy,
+                                       String filePath, String thumbnailPath) {
         try {
-            // Create screenshots directory if it doesn't exist
-            File screenshotDir = new File(SCREENSHOT_DIR);
-            if (!screenshotDir.exists()) {
-                screenshotDir.mkdirs();
+            write(Paths.get(filePath), ScreenshotEncoder.encode(png, outputPolicy));
+            if (thumbnailPath != null) {
+                write(Paths.get(thumbnailPath), ScreenshotEncoder.thumbnail(png, outputPolicy));
             }
-            
-            // Generate screenshot filename with timestamp
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-            String fileName = testName + "_" + timestamp + ".png";
-            String filePath = SCREENSHOT_DIR + "/" + fileName;
-            
-            // Take screenshot
-            TakesScreenshot takesScreenshot = (TakesScreenshot) DriverManager.getDriver();
-            File sourceFile = takesScreenshot.getScreenshotAs(OutputType.FILE);
-            File destinationFile = new File(filePath);
-            
-            // Copy screenshot to destination
-            FileUtils.copyFile(sourceFile, destinationFile);
-            
-            logger.info("Screenshot captured: " + filePath);
-            return filePath;
-            
         } catch (IOException e) {
-            logger.error("Failed to capture screenshot: " + e.getMessage());
-            return null;
+            failedWrites.incrementAndGet();
+            logger.error("Failed to encode screenshot {}: {}", filePath, e.getMessage());
         }
     }
     
     /**
-     * Take screenshot for test failure
+     * Buffered frames are small JPEGs without thumbnails, whatever the output policy
      */
-    public static String takeFailureScreenshot(String testName) {
-        String screenshotPath = takeScreenshot(testName + "_FAILURE");
-        if (screenshotPath != null) {
-            ExtentReportManager.addScreenshot(screenshotPath);
+    private static ScreenshotEncoder.Policy bufferPolicy() {
+        ScreenshotEncoder.Policy base = getPolicy();
+        return new ScreenshotEncoder.Policy("jpg", base.quality(),
+                ConfigReader.getIntProperty("screenshot.buffer.max.dimension", 480), base.grayscale(), 0);
+    }
+
+    private static ScreenshotEncoder.Policy getPolicy() {
+        if (policy == null) {
+            policy = ScreenshotEncoder.Policy.fromConfig();
         }
-        return screenshotPath;
+        return policy;
     }
     
+    /**
+     * Perceptual hash of the frame, or null if it cannot be decoded and so is never a duplicate
+     */
+    private static byte[] hashOf(byte[] png) {
+        try {
+            return PerceptualHash.of(png);
+        } catch (IOException e) {
+            logger.debug("Could not hash screenshot: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Take screenshot for test failure
+     */
+    public static String takeFailureScreenshot(String testName) {
+        // Failure evidence is always stored, even if the screen did not change
+        Screenshot screenshot = capture(testName + "_FAILURE", false);
+        ExtentReportManager.addScreenshot(screenshot.path(), screenshot.thumbnailPath());
+        return screenshot.path();
+    }
+
     /**
      * Take screenshot for test pass
      */
     public static String takePassScreenshot(String testName) {
-        String screenshotPath = takeScreenshot(testName + "_PASS");
-        if (screenshotPath != null) {
-            ExtentReportManager.addScreenshot(screenshotPath);
+        Screenshot screenshot = capture(testName + "_PASS");
+        ExtentReportManager.addScreenshot(screenshot.path(), screenshot.thumbnailPath());
+        return screenshot.path();
+    }
+
+    /**
+     * Wait for all queued screenshots to reach the disk, called at the end of the suite.
+     * Screenshots taken after that are written by the capturing thread itself.
+     */
+    public static void drain() {
+        ThreadPoolExecutor toDrain;
+        synchronized (ScreenshotUtils.class) {
+            toDrain = writer;
+            writer = null;
+            drained = true;
+        }
+        if (toDrain == null) {
+            return;
+        }
+        toDrain.shutdown();
+        try {
+            int timeout = ConfigReader.getIntProperty("screenshot.drain.timeout.seconds", 60);
+            if (!toDrain.awaitTermination(timeout, TimeUnit.SECONDS)) {
+                logger.warn("Screenshot writer did not finish within {} seconds, {} screenshots not written", timeout, toDrain.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failedWrites.get() > 0) {
+            logger.warn("{} screenshots failed to write", failedWrites.get());
+        }
+        if (dedupedFrames.sum() > 0) {
+            logger.info("{} screenshots unchanged since the previous one of their test were not stored", dedupedFrames.sum());
+        }
+        logger.info("Screenshot writer drained");
+    }
+
+    /**
+     * Unique file name without extension: test name, device, millisecond timestamp and a JVM-wide sequence number
+     */
+    private static String uniqueFileName(String testName) {
+        String timestamp = LocalDateTime.now().format(TIMESTAMP);
+        Device device = DriverManager.getCurrentDevice();
+        String devicePart = device != null ? "_" + sanitize(device.udid()) : "";
+        return sanitize(testName) + devicePart + "_" + timestamp + "_" + sequence.incrementAndGet();
+    }
+
+    private static String sanitize(String value) {
+        return value.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static void write(Path path, byte[] bytes) {
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(path, bytes, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            failedWrites.incrementAndGet();
+            logger.error("Failed to write screenshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static synchronized Executor getWriter() {
+        if (drained) {
+            // A new pool now would never be drained, and its frames could be lost at exit
+            return Runnable::run;
+        }
+        if (writer == null) {
+            int threads = ConfigReader.getIntProperty("screenshot.writer.threads", 2);
+            int capacity = ConfigReader.getIntProperty("screenshot.queue.capacity", 32);
+            // Virtual threads like the rest of the background work, so writers add no platform threads
+            writer = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(capacity),
+                    Thread.ofVirtual().name("screenshot-writer-", 1).factory(),
+                    // Backpressure: a full queue makes the capturing thread write the file itself. Unlike
+                    // CallerRunsPolicy this also runs frames handed over while drain() shuts the pool down
+                    (task, executor) -> task.run());
+            writer.allowCoreThreadTimeOut(true);
         }
-        return screenshotPath;
+        return writer;
     }
 }
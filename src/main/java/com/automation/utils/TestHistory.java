@@ -0,0 +1,151 @@
+package com.automation.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-test history from previous runs, kept in a JSON file keyed by the qualified test method
+ * name: how long each test takes, including its @BeforeMethod and @AfterMethod work, smoothed over
+ * runs so one slow run does not dominate, and whether it passed in its recent runs.
+ * Each shard of a sharded run writes its own copy; the copies are merged after the run, the most
+ * recently updated entry of a test winning:
+ * <pre>java -cp ... com.automation.utils.TestHistory merged.json shard-0.json shard-1.json ...</pre>
+ */
+public class TestHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestHistory.class);
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    /** Weight of the latest run in the smoothed duration */
+    private static final double SMOOTHING = 0.3;
+    /** Outcomes kept per test */
+    private static final int RECENT_RUNS = 10;
+
+    /**
+     * History of one test
+     *
+     * @param meanMillis smoothed duration in milliseconds
+     * @param lastMillis duration of the latest run
+     * @param runs       number of recorded runs
+     * @param updatedAt  epoch millis of the latest run
+     * @param recent     outcomes of the latest runs, oldest first: P passed, F failed
+     */
+    public record Entry(long meanMillis, long lastMillis, int runs, long updatedAt, String recent) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private TestHistory(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * The history file configured by test.history.file
+     */
+    public static Path defaultPath() {
+        return Paths.get(ConfigReader.getProperty("test.history.file", "test-output/history/test-history.json"));
+    }
+
+    /**
+     * Load a history file, or start an empty history if there is none or it is unreadable
+     */
+    public static TestHistory load(Path file) {
+        if (!Files.exists(file)) {
+            return new TestHistory(new TreeMap<>());
+        }
+        try {
+            return new TestHistory(new TreeMap<>(mapper.readValue(file.toFile(),
+                    new TypeReference<Map<String, Entry>>() { })));
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable test history {}: {}", file, e.getMessage());
+            return new TestHistory(new TreeMap<>());
+        }
+    }
+
+    /**
+     * Smoothed duration of a test in milliseconds, or -1 if it has never run
+     */
+    public long getMillis(String testName) {
+        Entry entry = entries.get(testName);
+        return entry == null ? -1 : entry.meanMillis();
+    }
+
+    /**
+     * Outcomes of the test's recent runs, oldest first, empty if it has never run
+     */
+    public String getRecentOutcomes(String testName) {
+        Entry entry = entries.get(testName);
+        return entry == null || entry.recent() == null ? "" : entry.recent();
+    }
+
+    public Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Add the durations and outcomes of one run; tests without an outcome, e.g. skipped ones,
+     * only update their duration
+     */
+    public void record(Map<String, Long> durations, Map<String, Boolean> passed) {
+        long now = System.currentTimeMillis();
+        durations.forEach((testName, millis) -> {
+            Entry previous = entries.get(testName);
+            long mean = previous == null ? millis : Math.round(SMOOTHING * millis + (1 - SMOOTHING) * previous.meanMillis());
+            String recent = previous == null || previous.recent() == null ? "" : previous.recent();
+            Boolean outcome = passed.get(testName);
+            if (outcome != null) {
+                recent += outcome ? "P" : "F";
+                recent = recent.substring(Math.max(0, recent.length() - RECENT_RUNS));
+            }
+            entries.put(testName, new Entry(mean, millis, previous == null ? 1 : previous.runs() + 1, now, recent));
+        });
+    }
+
+    /**
+     * Take every test entry of the other history that is more recent than ours
+     */
+    public void merge(TestHistory other) {
+        other.entries.forEach((testName, entry) -> entries.merge(testName, entry,
+                (mine, theirs) -> theirs.updatedAt() > mine.updatedAt() ? theirs : mine));
+    }
+
+    /**
+     * Write the history, replacing the file only once it is complete
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "test-history", ".tmp");
+        mapper.writeValue(temp.toFile(), entries);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TestHistory <merged.json> <history.json>...");
+            System.exit(1);
+        }
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            inputs.add(Paths.get(args[i]));
+        }
+        TestHistory merged = new TestHistory(new TreeMap<>());
+        for (Path input : inputs) {
+            merged.merge(load(input));
+        }
+        merged.save(Paths.get(args[0]));
+        logger.info("Merged {} test histories with {} tests into {}", inputs.size(), merged.entries.size(), args[0]);
+    }
+}
@@ -0,0 +1,77 @@
+package com.automation.base;
+
+import io.appium.java_client.AppiumBy;
+import org.openqa.selenium.By;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the XPath to native locator rewriting, including the expressions that must stay XPath
+ */
+public class LocatorCompilerTest {
+
+    @Test(description = "A lone resource-id or content-desc condition becomes an id or accessibility id lookup")
+    public void testIdAndAccessibilityId() {
+        assertCompiled("//*[@resource-id='com.app:id/save']", AppiumBy.id("com.app:id/save"));
+        assertCompiled("//*[@content-desc='Save']", AppiumBy.accessibilityId("Save"));
+    }
+
+    @Test(description = "Class names, conditions and a grouped index map onto UiSelector")
+    public void testUiSelector() {
+        assertCompiled("//android.widget.EditText[@text='First name']",
+                AppiumBy.androidUIAutomator("new UiSelector().className(\"android.widget.EditText\").text(\"First name\")"));
+        assertCompiled("(//*[contains(@content-desc,'Save')])[2]",
+                AppiumBy.androidUIAutomator("new UiSelector().descriptionContains(\"Save\").instance(1)"));
+        assertCompiled("//android.widget.Button[starts-with(@text, \"Sa\") and @enabled='true']",
+                AppiumBy.androidUIAutomator("new UiSelector().className(\"android.widget.Button\").textStartsWith(\"Sa\").enabled(true)"));
+        assertCompiled("//*[@resource-id='com.app:id/name' and @text='Jane']",
+                AppiumBy.androidUIAutomator("new UiSelector().resourceId(\"com.app:id/name\").text(\"Jane\")"));
+    }
+
+    @Test(description = "Quotes and backslashes in literals are escaped for UiSelector")
+    public void testLiteralEscaping() {
+        assertCompiled("//*[@text='say \"hi\" \\ bye']",
+                AppiumBy.androidUIAutomator("new UiSelector().text(\"say \\\"hi\\\" \\\\ bye\")"));
+    }
+
+    @Test(description = "Expressions outside the supported subset fall back to XPath")
+    public void testParseFallbacks() {
+        String[] unsupported = {
+                "//android.widget.Button",
+                "/hierarchy/android.widget.FrameLayout[1]/android.widget.Button",
+                "//android.widget.LinearLayout//android.widget.Button[@text='OK']",
+                "//android.widget.Button[2]",
+                "//*[@bounds='[0,0][10,10]']",
+                "//*[contains(@resource-id,'save')]",
+                "//*[ends-with(@text,'ok')]",
+                "//*[@checked='yes']",
+                "//*[@text='unterminated]",
+                "//*[@text='a' or @text='b']",
+                "(//*[@text='a'])[last()]",
+                "not xpath at all"
+        };
+        for (String xpath : unsupported) {
+            Assert.assertNull(LocatorCompiler.compileXPath(xpath), "Expected XPath to stay XPath: " + xpath);
+        }
+    }
+
+    @Test(description = "compile() returns non-XPath locators and uncompilable XPath unchanged, and compiled ones from the cache")
+    public void testCompile() {
+        By id = By.id("com.app:id/save");
+        Assert.assertSame(LocatorCompiler.compile(id), id);
+
+        By uncompilable = By.xpath("//android.widget.LinearLayout//android.widget.Button");
+        Assert.assertSame(LocatorCompiler.compile(uncompilable), uncompilable);
+
+        By xpath = By.xpath("//*[@content-desc='Add contact']");
+        By compiled = LocatorCompiler.compile(xpath);
+        Assert.assertEquals(compiled.toString(), AppiumBy.accessibilityId("Add contact").toString());
+        Assert.assertSame(LocatorCompiler.compile(By.xpath("//*[@content-desc='Add contact']")), compiled);
+    }
+
+    private static void assertCompiled(String xpath, By expected) {
+        By compiled = LocatorCompiler.compileXPath(xpath);
+        Assert.assertNotNull(compiled, "Expected " + xpath + " to compile");
+        Assert.assertEquals(compiled.toString(), expected.toString());
+    }
+}
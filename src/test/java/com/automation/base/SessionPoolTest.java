@@ -0,0 +1,218 @@
+package com.automation.base;
+
+import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.remote.SessionId;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for borrowing, reusing, evicting and closing pooled sessions, with drivers that talk to no server
+ */
+public class SessionPoolTest {
+
+    private static final Duration LONG = Duration.ofMinutes(5);
+    private static final AtomicInteger sessionIds = new AtomicInteger();
+
+    /**
+     * A driver attached to a made-up session that answers the pool's health check itself
+     */
+    private static final class StubDriver extends AndroidDriver {
+        volatile boolean healthy = true;
+        volatile int quits;
+
+        StubDriver() {
+            super(sessionUrl(), "UiAutomator2");
+        }
+
+        @Override
+        public SessionId getSessionId() {
+            return healthy ? super.getSessionId() : null;
+        }
+
+        @Override
+        public String currentActivity() {
+            return ".MainActivity";
+        }
+
+        @Override
+        public void quit() {
+            quits++;
+        }
+
+        private static URL sessionUrl() {
+            try {
+                return new URL("http://127.0.0.1:4723/session/stub-" + sessionIds.incrementAndGet());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Test(description = "A released session is reused by the next borrow of the same key only")
+    public void testBorrowReleaseReuse() {
+        SessionPool pool = new SessionPool(2, LONG, LONG);
+        StubDriver first = new StubDriver();
+        Assert.assertSame(pool.borrow("emulator-5554", () -> first), first);
+        Assert.assertFalse(pool.isReused(first));
+        pool.release(first);
+
+        Assert.assertSame(pool.borrow("emulator-5554", StubDriver::new), first);
+        Assert.assertTrue(pool.isReused(first));
+
+        StubDriver other = new StubDriver();
+        Assert.assertSame(pool.borrow("emulator-5556", () -> other), other);
+        Assert.assertEquals(pool.size(), 2);
+        Assert.assertEquals(first.quits, 0);
+    }
+
+    @Test(description = "Borrowing from an exhausted pool times out with an IllegalStateException")
+    public void testExhaustedTimeout() {
+        SessionPool pool = new SessionPool(1, LONG, Duration.ofMillis(200));
+        pool.borrow("emulator-5554", StubDriver::new);
+
+        long start = System.nanoTime();
+        IllegalStateException error = Assert.expectThrows(IllegalStateException.class,
+                () -> pool.borrow("emulator-5556", StubDriver::new));
+        Assert.assertTrue(error.getMessage().startsWith("Timed out waiting for a pooled session for emulator-5556"));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        Assert.assertEquals(pool.size(), 1);
+    }
+
+    @Test(description = "A borrower waiting on an exhausted pool gets the session released meanwhile")
+    public void testWaitingBorrowerIsServed() throws Exception {
+        SessionPool pool = new SessionPool(1, LONG, Duration.ofSeconds(10));
+        StubDriver driver = new StubDriver();
+        pool.borrow("emulator-5554", () -> driver);
+
+        CompletableFuture<AndroidDriver> waiting = CompletableFuture.supplyAsync(
+                () -> pool.borrow("emulator-5554", StubDriver::new));
+        Thread.sleep(100);
+        Assert.assertFalse(waiting.isDone());
+        pool.release(driver);
+
+        Assert.assertSame(waiting.get(5, TimeUnit.SECONDS), driver);
+    }
+
+    @Test(description = "A full pool makes room by quitting the least recently returned idle session")
+    public void testEvictOldestIdle() {
+        SessionPool pool = new SessionPool(2, LONG, LONG);
+        StubDriver older = new StubDriver();
+        StubDriver newer = new StubDriver();
+        pool.borrow("emulator-5554", () -> older);
+        pool.borrow("emulator-5556", () -> newer);
+        pool.release(older);
+        pool.release(newer);
+
+        StubDriver created = new StubDriver();
+        Assert.assertSame(pool.borrow("emulator-5558", () -> created), created);
+        Assert.assertEquals(older.quits, 1);
+        Assert.assertEquals(newer.quits, 0);
+        Assert.assertEquals(pool.size(), 2);
+        Assert.assertSame(pool.borrow("emulator-5556", StubDriver::new), newer);
+    }
+
+    @Test(description = "Sessions idle for longer than the idle limit are quit on the next borrow")
+    public void testEvictExpiredIdle() throws InterruptedException {
+        SessionPool pool = new SessionPool(2, Duration.ofMillis(1), LONG);
+        StubDriver expired = new StubDriver();
+        pool.borrow("emulator-5554", () -> expired);
+        pool.release(expired);
+        Thread.sleep(10);
+
+        StubDriver created = new StubDriver();
+        Assert.assertSame(pool.borrow("emulator-5554", () -> created), created);
+        Assert.assertEquals(expired.quits, 1);
+        Assert.assertEquals(pool.size(), 1);
+    }
+
+    @Test(description = "Broken sessions are quit instead of being pooled or handed out")
+    public void testBrokenSessions() {
+        SessionPool pool = new SessionPool(2, LONG, LONG);
+        StubDriver brokenOnRelease = new StubDriver();
+        pool.borrow("emulator-5554", () -> brokenOnRelease);
+        brokenOnRelease.healthy = false;
+        pool.release(brokenOnRelease);
+        Assert.assertEquals(brokenOnRelease.quits, 1);
+        Assert.assertEquals(pool.size(), 0);
+
+        StubDriver brokenWhileIdle = new StubDriver();
+        pool.borrow("emulator-5554", () -> brokenWhileIdle);
+        pool.release(brokenWhileIdle);
+        brokenWhileIdle.healthy = false;
+        StubDriver created = new StubDriver();
+        Assert.assertSame(pool.borrow("emulator-5554", () -> created), created);
+        Assert.assertEquals(brokenWhileIdle.quits, 1);
+        Assert.assertEquals(pool.size(), 1);
+
+        pool.invalidate(created);
+        Assert.assertEquals(created.quits, 1);
+        Assert.assertEquals(pool.size(), 0);
+    }
+
+    @Test(description = "A failing session factory gives its reserved slot back")
+    public void testFactoryFailure() {
+        SessionPool pool = new SessionPool(1, LONG, Duration.ofMillis(200));
+        Assert.expectThrows(RuntimeException.class, () -> pool.borrow("emulator-5554", () -> {
+            throw new RuntimeException("Could not start session");
+        }));
+        Assert.assertEquals(pool.size(), 0);
+
+        StubDriver created = new StubDriver();
+        Assert.assertSame(pool.borrow("emulator-5554", () -> created), created);
+    }
+
+    @Test(description = "Closing quits idle sessions, fails later borrows and quits sessions released afterwards")
+    public void testClose() {
+        SessionPool pool = new SessionPool(2, LONG, LONG);
+        StubDriver idle = new StubDriver();
+        StubDriver leased = new StubDriver();
+        pool.borrow("emulator-5554", () -> idle);
+        pool.borrow("emulator-5556", () -> leased);
+        pool.release(idle);
+
+        pool.close();
+        Assert.assertEquals(idle.quits, 1);
+        Assert.assertEquals(leased.quits, 0);
+        Assert.expectThrows(IllegalStateException.class, () -> pool.borrow("emulator-5554", StubDriver::new));
+
+        pool.release(leased);
+        Assert.assertEquals(leased.quits, 1);
+        Assert.assertEquals(pool.size(), 0);
+    }
+
+    @Test(description = "Closing wakes borrowers waiting on an exhausted pool, which then fail")
+    public void testCloseWhileWaiting() throws Exception {
+        SessionPool pool = new SessionPool(1, LONG, Duration.ofSeconds(10));
+        pool.borrow("emulator-5554", StubDriver::new);
+        CompletableFuture<AndroidDriver> waiting = CompletableFuture.supplyAsync(
+                () -> pool.borrow("emulator-5554", StubDriver::new));
+        Thread.sleep(100);
+        Assert.assertFalse(waiting.isDone());
+
+        pool.close();
+        ExecutionException error = Assert.expectThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(error.getCause() instanceof IllegalStateException, String.valueOf(error.getCause()));
+    }
+
+    @Test(description = "A driver the pool never handed out is quit on release")
+    public void testReleaseForeignDriver() {
+        SessionPool pool = new SessionPool(1, LONG, LONG);
+        StubDriver foreign = new StubDriver();
+        pool.release(foreign);
+        Assert.assertEquals(foreign.quits, 1);
+        Assert.assertEquals(pool.size(), 0);
+    }
+
+    @Test(description = "A pool needs room for at least one session")
+    public void testInvalidSize() {
+        Assert.expectThrows(IllegalArgumentException.class, () -> new SessionPool(0, LONG, LONG));
+    }
+}
@@ -0,0 +1,72 @@
+package com.automation.listeners;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the longest-processing-time-first shard plan
+ */
+public class ShardInterceptorTest {
+
+    @Test(description = "Longest tests go first, each to the least loaded shard")
+    public void testLongestFirstBalance() {
+        Map<String, Long> durations = durations("e", 1L, "c", 4L, "a", 7L, "d", 3L, "b", 5L);
+        Map<String, Integer> plan = ShardInterceptor.plan(durations, 2);
+
+        Assert.assertEquals(plan, Map.of("a", 0, "b", 1, "c", 1, "d", 0, "e", 1));
+        Assert.assertEquals(loads(plan, durations, 2), new long[] {10, 10});
+    }
+
+    @Test(description = "Equal durations and equal loads are broken by name and shard number, whatever the input order")
+    public void testDeterministicTies() {
+        Map<String, Long> forward = durations("a", 5L, "b", 5L, "c", 5L, "d", 5L);
+        Map<String, Long> backward = durations("d", 5L, "c", 5L, "b", 5L, "a", 5L);
+
+        Map<String, Integer> plan = ShardInterceptor.plan(forward, 3);
+        Assert.assertEquals(plan, Map.of("a", 0, "b", 1, "c", 2, "d", 0));
+        Assert.assertEquals(ShardInterceptor.plan(backward, 3), plan);
+    }
+
+    @Test(description = "Every test lands on exactly one shard and no shard exceeds the ideal load by more than the longest test")
+    public void testEveryTestPlannedOnce() {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            durations.put("test" + i, (long) (i * 37 % 23 + 1) * 1000);
+        }
+        int shardCount = 4;
+        Map<String, Integer> plan = ShardInterceptor.plan(durations, shardCount);
+
+        Assert.assertEquals(plan.keySet(), durations.keySet());
+        long total = durations.values().stream().mapToLong(Long::longValue).sum();
+        long longest = durations.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        for (long load : loads(plan, durations, shardCount)) {
+            Assert.assertTrue(load <= total / shardCount + longest, "Shard load " + load + " is out of balance");
+        }
+    }
+
+    @Test(description = "More shards than tests leaves the extra shards empty")
+    public void testMoreShardsThanTests() {
+        Map<String, Long> durations = durations("a", 2L, "b", 1L);
+        Map<String, Integer> plan = ShardInterceptor.plan(durations, 4);
+
+        Assert.assertEquals(plan, Map.of("a", 0, "b", 1));
+        Assert.assertEquals(loads(plan, durations, 4), new long[] {2, 1, 0, 0});
+    }
+
+    private static Map<String, Long> durations(Object... namesAndMillis) {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndMillis.length; i += 2) {
+            durations.put((String) namesAndMillis[i], (Long) namesAndMillis[i + 1]);
+        }
+        return durations;
+    }
+
+    private static long[] loads(Map<String, Integer> plan, Map<String, Long> durations, int shardCount) {
+        long[] loads = new long[shardCount];
+        plan.forEach((testName, shard) -> loads[shard] += durations.get(testName));
+        return loads;
+    }
+}
@@ -0,0 +1,117 @@
+package com.automation.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the histogram bucket bounds and percentile edges
+ */
+public class LatencyHistogramTest {
+
+    private static final long NANOS_PER_MICRO = 1000;
+    private static final double EPSILON = 1e-9;
+
+    @Test(description = "An empty histogram reports zero everywhere")
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMeanMillis(), 0.0);
+        Assert.assertEquals(histogram.getMaxMillis(), 0.0);
+        Assert.assertEquals(histogram.getPercentileMillis(0), 0.0);
+        Assert.assertEquals(histogram.getPercentileMillis(50), 0.0);
+        Assert.assertEquals(histogram.getPercentileMillis(100), 0.0);
+    }
+
+    @Test(description = "A single sample is exact at every percentile, because bucket bounds are capped at the max")
+    public void testSingleSample() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1234 * NANOS_PER_MICRO);
+        for (double percentile : new double[] {0, 1, 50, 99, 100}) {
+            Assert.assertEquals(histogram.getPercentileMillis(percentile), 1.234, EPSILON, "p" + percentile);
+        }
+        Assert.assertEquals(histogram.getMeanMillis(), 1.234, EPSILON);
+        Assert.assertEquals(histogram.getMaxMillis(), 1.234, EPSILON);
+    }
+
+    @Test(description = "p0 is the bucket of the smallest sample, p100 and anything beyond is the exact max")
+    public void testPercentileEdges() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500 * NANOS_PER_MICRO);
+        histogram.record(700 * NANOS_PER_MICRO);
+        histogram.record(90_001 * NANOS_PER_MICRO);
+
+        double p0 = histogram.getPercentileMillis(0);
+        Assert.assertTrue(p0 >= 0.5 && p0 <= 0.5 * 1.25, "p0 was " + p0);
+        Assert.assertEquals(histogram.getPercentileMillis(100), 90.001, EPSILON);
+        Assert.assertEquals(histogram.getPercentileMillis(150), 90.001, EPSILON);
+        Assert.assertEquals(histogram.getMaxMillis(), 90.001, EPSILON);
+        // Two of three samples are at or below p66.7, the third sample sets p67
+        double p66 = histogram.getPercentileMillis(66.6);
+        Assert.assertTrue(p66 >= 0.7 && p66 <= 0.7 * 1.25, "p66.6 was " + p66);
+        Assert.assertEquals(histogram.getPercentileMillis(67), 90.001, EPSILON);
+    }
+
+    @Test(description = "Values below 4 us have a bucket each, larger ones are reported within 25% above the true value")
+    public void testBucketBounds() {
+        for (long micros = 0; micros < 4; micros++) {
+            Assert.assertEquals(percentileWithOutlier(micros), micros / 1000.0, EPSILON, micros + " us");
+        }
+        for (long micros = 4; micros < 1L << 35; micros = micros * 5 / 4 + 1) {
+            double reported = percentileWithOutlier(micros) * 1000;
+            Assert.assertTrue(reported >= micros && reported <= micros * 1.25,
+                    micros + " us was reported as " + reported + " us");
+        }
+        // Powers of two start a new bucket, so the value just below shares none with them
+        Assert.assertEquals(percentileWithOutlier(1023), 1.023, EPSILON);
+        Assert.assertEquals(percentileWithOutlier(1024), 1.279, EPSILON);
+    }
+
+    @Test(description = "Values beyond the last bucket are counted there and still reported with the exact max")
+    public void testOverflow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long hugeMicros = 1L << 40;
+        histogram.record(hugeMicros * NANOS_PER_MICRO);
+        histogram.record(hugeMicros * 2 * NANOS_PER_MICRO);
+        Assert.assertEquals(histogram.getCount(), 2);
+        Assert.assertEquals(histogram.getMaxMillis(), hugeMicros * 2 / 1000.0, EPSILON);
+        Assert.assertEquals(histogram.getPercentileMillis(100), hugeMicros * 2 / 1000.0, EPSILON);
+    }
+
+    @Test(description = "Negative durations count as zero")
+    public void testNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5 * NANOS_PER_MICRO);
+        Assert.assertEquals(histogram.getCount(), 1);
+        Assert.assertEquals(histogram.getMaxMillis(), 0.0);
+        Assert.assertEquals(histogram.getPercentileMillis(100), 0.0);
+    }
+
+    @Test(description = "Adding a histogram combines counts, mean, max and percentiles")
+    public void testAdd() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(2 * NANOS_PER_MICRO);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(2000 * NANOS_PER_MICRO);
+        }
+        fast.add(slow);
+        Assert.assertEquals(fast.getCount(), 100);
+        Assert.assertEquals(fast.getMeanMillis(), (90 * 2 + 10 * 2000) / 1000.0 / 100, EPSILON);
+        Assert.assertEquals(fast.getMaxMillis(), 2.0, EPSILON);
+        Assert.assertEquals(fast.getPercentileMillis(90), 0.002, EPSILON);
+        Assert.assertEquals(fast.getPercentileMillis(91), 2.0, EPSILON);
+        Assert.assertEquals(slow.getCount(), 10);
+    }
+
+    /**
+     * The percentile reported for one sample, with a larger sample so the bucket bound is not capped at the max
+     */
+    private static double percentileWithOutlier(long micros) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(micros * NANOS_PER_MICRO);
+        histogram.record((1L << 40) * NANOS_PER_MICRO);
+        return histogram.getPercentileMillis(50);
+    }
+}
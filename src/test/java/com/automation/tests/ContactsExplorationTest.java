@@ -1,6 +1,7 @@
 package com.automation.tests;
 
 import com.automation.base.BaseTest;
+import com.automation.base.PageSnapshot;
 import io.appium.java_client.AppiumBy;
 import org.openqa.selenium.WebElement;
 import org.testng.Assert;
@@ -26,59 +27,54 @@ public class ContactsExplorationTest extends BaseTest {
         // Take screenshot of main contacts screen
         takeScreenshot("contacts_main_screen");
         
+        // Read the whole screen once and answer the exploration queries locally
+        PageSnapshot snapshot = PageSnapshot.capture(driver);
+        
         // Find all clickable elements to understand the interface
-        List<WebElement> clickableElements = driver.findElements(AppiumBy.xpath("//*[@clickable='true']"));
-        logTestInfo("Found " + clickableElements.size() + " clickable elements");
+        int clickableCount = snapshot.count("//*[@clickable='true']");
+        logTestInfo("Found " + clickableCount + " clickable elements");
         
         // Find all text elements to see what's displayed
-        List<WebElement> textElements = driver.findElements(AppiumBy.xpath("//android.widget.TextView"));
-        logTestInfo("Found " + textElements.size() + " text elements");
+        List<String> texts = snapshot.getTexts("//android.widget.TextView");
+        logTestInfo("Found " + texts.size() + " text elements");
         
         // Log some of the text we can see
-        for (int i = 0; i < Math.min(5, textElements.size()); i++) {
-            try {
-                String text = textElements.get(i).getText();
-                if (text != null && !text.trim().isEmpty()) {
-                    logTestInfo("Text element " + i + ": " + text);
-                }
-            } catch (Exception e) {
-                // Skip elements that can't be read
+        for (int i = 0; i < Math.min(5, texts.size()); i++) {
+            String text = texts.get(i);
+            if (text != null && !text.trim().isEmpty()) {
+                logTestInfo("Text element " + i + ": " + text);
             }
         }
         
         // Look for common contact app elements
-        try {
-            WebElement addButton = driver.findElement(AppiumBy.xpath("//*[contains(@content-desc,'Create') or contains(@content-desc,'Add')]"));
-            logTestInfo("Found add/create button: " + addButton.getAttribute("content-desc"));
+        String addButtonDesc = snapshot.getAttribute("//*[contains(@content-desc,'Create') or contains(@content-desc,'Add')]", "content-desc");
+        if (addButtonDesc != null) {
+            logTestInfo("Found add/create button: " + addButtonDesc);
             takeScreenshot("found_add_button");
-        } catch (Exception e) {
+        } else {
             logTestInfo("No obvious add/create button found");
         }
         
         // Look for FAB (Floating Action Button) which is common in Material Design
-        try {
-            WebElement fab = driver.findElement(AppiumBy.xpath("//android.widget.ImageButton"));
-            logTestInfo("Found potential FAB button: " + fab.getAttribute("content-desc"));
+        String fabDesc = snapshot.getAttribute("//android.widget.ImageButton", "content-desc");
+        if (fabDesc != null) {
+            logTestInfo("Found potential FAB button: " + fabDesc);
             takeScreenshot("found_fab");
-        } catch (Exception e) {
+        } else {
             logTestInfo("No FAB found");
         }
         
         // Look for menu/options
-        try {
-            WebElement menu = driver.findElement(AppiumBy.xpath("//*[contains(@content-desc,'menu') or contains(@content-desc,'More')]"));
-            logTestInfo("Found menu option: " + menu.getAttribute("content-desc"));
-        } catch (Exception e) {
+        String menuDesc = snapshot.getAttribute("//*[contains(@content-desc,'menu') or contains(@content-desc,'More')]", "content-desc");
+        if (menuDesc != null) {
+            logTestInfo("Found menu option: " + menuDesc);
+        } else {
             logTestInfo("No obvious menu found");
         }
         
         // Check if there are any existing contacts
-        try {
-            List<WebElement> contactItems = driver.findElements(AppiumBy.xpath("//android.widget.LinearLayout[contains(@resource-id,'contact')]"));
-            logTestInfo("Found " + contactItems.size() + " potential contact items");
-        } catch (Exception e) {
-            logTestInfo("Could not find contact items with standard locator");
-        }
+        int contactItems = snapshot.count("//android.widget.LinearLayout[contains(@resource-id,'contact')]");
+        logTestInfo("Found " + contactItems + " potential contact items");
         
         // Final screenshot
         takeScreenshot("contacts_exploration_complete");
@@ -119,12 +115,12 @@ public class ContactsExplorationTest extends BaseTest {
                         button.click();
                         
                         // Wait a moment and take screenshot after click
-                        Thread.sleep(2000);
+                        waitForUiToSettle(5);
                         takeScreenshot("after_button_click_" + i);
                         
                         // Navigate back if we moved to a different screen
                         driver.navigate().back();
-                        Thread.sleep(1000);
+                        waitForUiToSettle(3);
                         
                     } catch (Exception e) {
                         logTestInfo("Could not interact with button " + i + ": " + e.getMessage());
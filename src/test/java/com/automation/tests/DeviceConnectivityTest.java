@@ -3,7 +3,6 @@ package com.automation.tests;
 import com.automation.base.BaseTest;
 import com.automation.base.DriverManager;
 import com.automation.utils.ExtentReportManager;
-import com.automation.utils.ScreenshotUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -24,21 +23,19 @@ public class DeviceConnectivityTest extends BaseTest {
             
             // Get device info
             String currentActivity = DriverManager.getDriver().currentActivity();
-            logger.info("Current activity: " + currentActivity);
+            logger.info("Current activity: {}", currentActivity);
             
             // Get device orientation
             org.openqa.selenium.ScreenOrientation orientation = DriverManager.getDriver().getOrientation();
-            logger.info("Device orientation: " + orientation);
+            logger.info("Device orientation: {}", orientation);
             
             ExtentReportManager.logPass("Device connectivity test passed!");
             ExtentReportManager.logInfo("Current Activity: " + currentActivity);
             ExtentReportManager.logInfo("Device Orientation: " + orientation);
             
-            ScreenshotUtils.takePassScreenshot("DeviceConnectivity");
-            
         } catch (Exception e) {
+            // The ScreenshotListener captures the failure while the session is still open
             ExtentReportManager.logFail("Device connectivity test failed: " + e.getMessage());
-            ScreenshotUtils.takeFailureScreenshot("DeviceConnectivityFailed");
             throw e;
         }
     }
@@ -0,0 +1,120 @@
+package com.automation.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Unit tests for typed configuration values, their validation and per-device profiles
+ */
+public class ConfigReaderTest {
+
+    @Test(description = "The profiled key follows a configured udid even when the udid contains dots")
+    public void testProfiledKeyWithConfiguredUdid() {
+        List<String> devices = List.of("emulator-5554", "192.168.1.5:5555");
+        Assert.assertEquals(ConfigReader.profiledKey("profile.192.168.1.5:5555.explicit.wait.timeout", devices),
+                "explicit.wait.timeout");
+        Assert.assertEquals(ConfigReader.profiledKey("profile.emulator-5554.no.reset", devices), "no.reset");
+    }
+
+    @Test(description = "Without a configured udid, the udid is the first segment and the rest is the whole key")
+    public void testProfiledKeyWithUnknownUdid() {
+        List<String> devices = List.of("");
+        Assert.assertEquals(ConfigReader.profiledKey("profile.R58M123.explicit.wait.timeout", devices), "explicit.wait.timeout");
+        Assert.assertEquals(ConfigReader.profiledKey("profile.R58M123.timeout", devices), "timeout");
+        Assert.assertNull(ConfigReader.profiledKey("profile.R58M123", devices));
+        Assert.assertNull(ConfigReader.profiledKey("profile.R58M123.", devices));
+        Assert.assertNull(ConfigReader.profiledKey("profile..timeout", devices));
+    }
+
+    @Test(description = "Values that do not match the type of their default are all reported in one failure")
+    public void testValidateReportsBadValues() {
+        Map<String, String> values = new HashMap<>(Map.of(
+                "explicit.wait.timeout", "fifteen",
+                "no.reset", "yes",
+                "devices", "192.168.1.5:5555"));
+        values.put("profile.192.168.1.5:5555.page.load.timeout", "30s");
+        values.put("profile.emulator-5554.screenshot.on.pass", "1");
+
+        RuntimeException error = Assert.expectThrows(RuntimeException.class, () -> ConfigReader.validate(defaults(), values));
+        Assert.assertEquals(error.getMessage(), "Invalid configuration: "
+                + "explicit.wait.timeout must be an integer: fifteen; "
+                + "no.reset must be true or false: yes; "
+                + "profile.192.168.1.5:5555.page.load.timeout must be an integer: 30s; "
+                + "profile.emulator-5554.screenshot.on.pass must be true or false: 1");
+    }
+
+    @Test(description = "Valid, empty and unknown values pass validation")
+    public void testValidateAcceptsGoodValues() {
+        Map<String, String> values = new HashMap<>(Map.of(
+                "explicit.wait.timeout", " 20 ",
+                "no.reset", "FALSE",
+                "page.load.timeout", "",
+                "app.package", "com.example",
+                "custom.key", "anything"));
+        values.put("profile.R58M123.explicit.wait.timeout", "-1");
+        values.put("profile.R58M123", "no key");
+        values.put("profile.R58M123.custom.timeout", "later");
+
+        ConfigReader.validate(defaults(), values);
+    }
+
+    @Test(description = "Typed lookups fall back to the default for missing or empty values and fail on bad ones")
+    public void testSnapshotTypedValues() {
+        ConfigReader.Snapshot config = new ConfigReader.Snapshot(Map.of(
+                "explicit.wait.timeout", " 15 ",
+                "page.load.timeout", "",
+                "implicit.wait.timeout", "1.5",
+                "no.reset", "TRUE",
+                "screenshot.on.pass", "yes"));
+
+        Assert.assertEquals(config.getInt("explicit.wait.timeout", 0), 15);
+        Assert.assertEquals(config.getInt("page.load.timeout", 30), 30);
+        Assert.assertEquals(config.getInt("missing.timeout", 7), 7);
+        RuntimeException error = Assert.expectThrows(RuntimeException.class, () -> config.getInt("implicit.wait.timeout", 0));
+        Assert.assertEquals(error.getMessage(), "Invalid integer property: implicit.wait.timeout");
+
+        Assert.assertTrue(config.getBoolean("no.reset"));
+        Assert.assertFalse(config.getBoolean("screenshot.on.pass"));
+        Assert.assertFalse(config.getBoolean("missing.flag"));
+    }
+
+    @Test(description = "A device profile overrides its keys for that device only, with values parsed like any other")
+    public void testDeviceProfile() {
+        ConfigReader.Snapshot config = new ConfigReader.Snapshot(Map.of(
+                "explicit.wait.timeout", "15",
+                "no.reset", "true",
+                "profile.192.168.1.5:5555.explicit.wait.timeout", "40",
+                "profile.emulator-5554.no.reset", "false",
+                "profile.emulator-5554.timeout", "3"));
+
+        ConfigReader.Snapshot network = config.forDevice("192.168.1.5:5555");
+        Assert.assertEquals(network.getInt("explicit.wait.timeout", 0), 40);
+        Assert.assertTrue(network.getBoolean("no.reset"));
+        Assert.assertSame(config.forDevice("192.168.1.5:5555"), network);
+
+        ConfigReader.Snapshot emulator = config.forDevice("emulator-5554");
+        Assert.assertEquals(emulator.getInt("explicit.wait.timeout", 0), 15);
+        Assert.assertFalse(emulator.getBoolean("no.reset"));
+        Assert.assertEquals(emulator.get("timeout"), "3");
+        Assert.assertNull(network.get("timeout"));
+
+        Assert.assertEquals(config.forDevice("R58M123").getInt("explicit.wait.timeout", 0), 15);
+        Assert.assertEquals(config.getInt("explicit.wait.timeout", 0), 15);
+    }
+
+    private static Properties defaults() {
+        Properties defaults = new Properties();
+        defaults.setProperty("explicit.wait.timeout", "15");
+        defaults.setProperty("page.load.timeout", "30");
+        defaults.setProperty("no.reset", "true");
+        defaults.setProperty("screenshot.on.pass", "false");
+        defaults.setProperty("app.package", "");
+        defaults.setProperty("devices", "");
+        return defaults;
+    }
+}
@@ -0,0 +1,97 @@
+package com.automation.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Unit tests for the screenshot hash that decides which frames are stored as unchanged
+ */
+public class PerceptualHashTest {
+
+    private static final int CELLS = 32 * 32;
+
+    @Test(description = "Identical hashes are at distance 0")
+    public void testIdenticalHashes() {
+        byte[] hash = filled(128);
+        Assert.assertEquals(PerceptualHash.distance(hash, hash.clone()), 0);
+    }
+
+    @Test(description = "Cells within the luminance tolerance do not count, cells beyond it do")
+    public void testCellTolerance() {
+        byte[] base = filled(100);
+        byte[] within = filled(100);
+        within[0] = (byte) 106;
+        within[1] = (byte) 94;
+        Assert.assertEquals(PerceptualHash.distance(base, within), 0);
+
+        byte[] beyond = filled(100);
+        beyond[0] = (byte) 107;
+        beyond[CELLS - 1] = (byte) 93;
+        Assert.assertEquals(PerceptualHash.distance(base, beyond), 2);
+    }
+
+    @Test(description = "Luminance bytes compare unsigned, so bright and dark cells are far apart")
+    public void testUnsignedLuminance() {
+        byte[] dark = filled(0);
+        byte[] bright = filled(255);
+        Assert.assertEquals(PerceptualHash.distance(dark, bright), CELLS);
+
+        byte[] nearWhite = filled(250);
+        Assert.assertEquals(PerceptualHash.distance(nearWhite, bright), 0);
+    }
+
+    @Test(description = "Distance is symmetric")
+    public void testSymmetric() {
+        byte[] first = filled(40);
+        byte[] second = filled(40);
+        for (int i = 0; i < CELLS; i += 3) {
+            second[i] = (byte) 200;
+        }
+        Assert.assertEquals(PerceptualHash.distance(first, second), PerceptualHash.distance(second, first));
+    }
+
+    @Test(description = "A re-encoded frame hashes the same, a changed region only moves the cells it covers")
+    public void testHashOfEncodedFrames() throws IOException {
+        BufferedImage screen = screen();
+        byte[] original = PerceptualHash.of(png(screen));
+        Assert.assertEquals(PerceptualHash.distance(original, PerceptualHash.of(png(screen()))), 0);
+
+        // A black box over one grid cell of a 320x640 screen
+        Graphics2D graphics = screen.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, 10, 20);
+        graphics.dispose();
+        Assert.assertEquals(PerceptualHash.distance(original, PerceptualHash.of(png(screen))), 1);
+    }
+
+    private static byte[] filled(int luminance) {
+        byte[] hash = new byte[CELLS];
+        Arrays.fill(hash, (byte) luminance);
+        return hash;
+    }
+
+    private static BufferedImage screen() {
+        BufferedImage image = new BufferedImage(320, 640, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 320, 640);
+        graphics.setColor(new Color(30, 90, 200));
+        graphics.fillRect(0, 0, 320, 60);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package com.automation.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for recording, saving and merging the per-test history
+ */
+public class TestHistoryTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("test-history");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test(description = "A missing or unreadable file gives an empty history")
+    public void testMissingAndUnreadable() throws IOException {
+        Assert.assertTrue(TestHistory.load(directory.resolve("missing.json")).getEntries().isEmpty());
+
+        Path broken = Files.writeString(directory.resolve("broken.json"), "{ not json");
+        TestHistory history = TestHistory.load(broken);
+        Assert.assertTrue(history.getEntries().isEmpty());
+        Assert.assertEquals(history.getMillis("a.Test.method"), -1);
+        Assert.assertEquals(history.getRecentOutcomes("a.Test.method"), "");
+    }
+
+    @Test(description = "Durations are smoothed over runs and outcomes keep the last ten runs")
+    public void testRecord() {
+        TestHistory history = TestHistory.load(directory.resolve("missing.json"));
+        history.record(Map.of("a", 1000L), Map.of("a", true));
+        Assert.assertEquals(history.getMillis("a"), 1000);
+
+        history.record(Map.of("a", 2000L), Map.of("a", false));
+        Assert.assertEquals(history.getMillis("a"), 1300);
+        Assert.assertEquals(history.getEntries().get("a").lastMillis(), 2000);
+        Assert.assertEquals(history.getEntries().get("a").runs(), 2);
+        Assert.assertEquals(history.getRecentOutcomes("a"), "PF");
+
+        // A run without an outcome, e.g. a skip, only updates the duration
+        history.record(Map.of("a", 1300L), Map.of());
+        Assert.assertEquals(history.getRecentOutcomes("a"), "PF");
+
+        for (int i = 0; i < 10; i++) {
+            history.record(Map.of("a", 1300L), Map.of("a", i % 2 == 0));
+        }
+        Assert.assertEquals(history.getRecentOutcomes("a"), "PFPFPFPFPF");
+    }
+
+    @Test(description = "Saved histories load back unchanged")
+    public void testSaveAndLoad() throws IOException {
+        TestHistory history = TestHistory.load(directory.resolve("missing.json"));
+        history.record(Map.of("a", 1500L, "b", 300L), Map.of("a", true));
+        Path file = directory.resolve("nested/history.json");
+        history.save(file);
+
+        Assert.assertEquals(TestHistory.load(file).getEntries(), history.getEntries());
+    }
+
+    @Test(description = "Merging takes the most recently updated entry of each test and keeps tests only one side has")
+    public void testMerge() throws IOException {
+        TestHistory shard0 = TestHistory.load(write("shard-0.json", "{"
+                + "\"a\":{\"meanMillis\":100,\"lastMillis\":100,\"runs\":1,\"updatedAt\":2000,\"recent\":\"P\"},"
+                + "\"b\":{\"meanMillis\":200,\"lastMillis\":200,\"runs\":3,\"updatedAt\":1000,\"recent\":\"PPF\"}}"));
+        TestHistory shard1 = TestHistory.load(write("shard-1.json", "{"
+                + "\"a\":{\"meanMillis\":900,\"lastMillis\":900,\"runs\":1,\"updatedAt\":1000,\"recent\":\"F\"},"
+                + "\"b\":{\"meanMillis\":250,\"lastMillis\":300,\"runs\":4,\"updatedAt\":3000,\"recent\":\"PPFP\"},"
+                + "\"c\":{\"meanMillis\":50,\"lastMillis\":50,\"runs\":1,\"updatedAt\":1000,\"recent\":\"P\"}}"));
+
+        shard0.merge(shard1);
+        Assert.assertEquals(shard0.getMillis("a"), 100);
+        Assert.assertEquals(shard0.getMillis("b"), 250);
+        Assert.assertEquals(shard0.getRecentOutcomes("b"), "PPFP");
+        Assert.assertEquals(shard0.getMillis("c"), 50);
+        Assert.assertEquals(shard0.getEntries().size(), 3);
+    }
+
+    @Test(description = "The command line merge writes the combined history")
+    public void testMain() throws IOException {
+        write("shard-0.json", "{\"a\":{\"meanMillis\":100,\"lastMillis\":100,\"runs\":1,\"updatedAt\":1000,\"recent\":\"P\"}}");
+        write("shard-1.json", "{\"b\":{\"meanMillis\":200,\"lastMillis\":200,\"runs\":1,\"updatedAt\":1000,\"recent\":\"F\"}}");
+        Path merged = directory.resolve("merged.json");
+
+        TestHistory.main(new String[] {merged.toString(),
+                directory.resolve("shard-0.json").toString(), directory.resolve("shard-1.json").toString()});
+        TestHistory history = TestHistory.load(merged);
+        Assert.assertEquals(history.getMillis("a"), 100);
+        Assert.assertEquals(history.getMillis("b"), 200);
+    }
+
+    private Path write(String name, String json) throws IOException {
+        return Files.writeString(directory.resolve(name), json);
+    }
+}